@@ -0,0 +1,77 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * time and memory to construct a GraphSearcher from the edge arrays<br>
+ * run it with -prof gc to see the bytes allocated per construction, the
+ * retained benchmark reports the heap the GraphSearcher keeps
+ * 
+ * @author trytocatch@163.com
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConstructionBenchmark {
+	private static final long SEED = 20161018;
+
+	@Param({ "RANDOM", "GRID", "SCALE_FREE", "DENSE" })
+	public GraphShape shape;
+
+	@Param({ "10000", "100000" })
+	public int nodeCount;
+
+	private GraphShape.Edges edges;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		edges = shape.generate(nodeCount, new Random(SEED));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	public GraphSearcher<Integer> build() {
+		return edges.build();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 5)
+	public GraphSearcher<Integer> retained(Memory memory) {
+		long before = memory.usedAfterGc();
+		GraphSearcher<Integer> searcher = edges.build();
+		memory.retainedBytes = memory.usedAfterGc() - before;
+		return searcher;
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Memory {
+		public long retainedBytes;
+
+		long usedAfterGc() {
+			Runtime runtime = Runtime.getRuntime();
+			for (int n = 0; n < 3; n++)
+				System.gc();
+			return runtime.totalMemory() - runtime.freeMemory();
+		}
+	}
+}
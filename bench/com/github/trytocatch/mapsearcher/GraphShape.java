@@ -0,0 +1,125 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.Random;
+
+/**
+ * the generated graphs for the benchmarks, the weights are 1~100<br>
+ * the nodes are boxed once and shared by the edges, so the edge arrays only
+ * cost the references
+ * 
+ * @author trytocatch@163.com
+ */
+public enum GraphShape {
+	/**
+	 * every node links to 4 random nodes
+	 */
+	RANDOM {
+		@Override
+		Edges generate(int nodeCount, Random random) {
+			Edges edges = new Edges(nodeCount, nodeCount * 4);
+			for (int m = 0; m < nodeCount; m++) {
+				for (int n = 0; n < 4; n++)
+					edges.add(m, random.nextInt(nodeCount), random);
+			}
+			return edges;
+		}
+	},
+	/**
+	 * a square grid, every node links to its 4 neighbours
+	 */
+	GRID {
+		@Override
+		Edges generate(int nodeCount, Random random) {
+			int side = (int) Math.sqrt(nodeCount);
+			Edges edges = new Edges(side * side, side * (side - 1) * 4);
+			for (int m = 0; m < side * side; m++) {
+				if (m % side + 1 < side) {
+					edges.add(m, m + 1, random);
+					edges.add(m + 1, m, random);
+				}
+				if (m + side < side * side) {
+					edges.add(m, m + side, random);
+					edges.add(m + side, m, random);
+				}
+			}
+			return edges;
+		}
+	},
+	/**
+	 * preferential attachment, every new node links to 3 existing nodes
+	 * picked by degree, in both directions
+	 */
+	SCALE_FREE {
+		@Override
+		Edges generate(int nodeCount, Random random) {
+			int links = Math.min(3, nodeCount - 1);
+			int edgeCount = Math.max(0, nodeCount - links - 1) * links * 2;
+			Edges edges = new Edges(nodeCount, edgeCount);
+			// every node appears once per edge end, so a random pick of it is
+			// proportional to the degree
+			int[] ends = new int[edgeCount + links + 1];
+			int size = 0;
+			for (int m = 0; m <= links; m++)
+				ends[size++] = m;
+			for (int m = links + 1; m < nodeCount; m++) {
+				for (int n = 0; n < links; n++) {
+					int target = ends[random.nextInt(size)];
+					edges.add(m, target, random);
+					edges.add(target, m, random);
+					ends[size++] = target;
+					ends[size++] = m;
+				}
+			}
+			return edges;
+		}
+	},
+	/**
+	 * every node links to 128 random nodes, or all the others on small graphs
+	 */
+	DENSE {
+		@Override
+		Edges generate(int nodeCount, Random random) {
+			int links = Math.min(128, nodeCount - 1);
+			Edges edges = new Edges(nodeCount, nodeCount * links);
+			for (int m = 0; m < nodeCount; m++) {
+				for (int n = 0; n < links; n++)
+					edges.add(m, (m + 1 + random.nextInt(nodeCount - 1)) % nodeCount, random);
+			}
+			return edges;
+		}
+	};
+
+	abstract Edges generate(int nodeCount, Random random);
+
+	static class Edges {
+		final Integer[] nodes;
+		final Integer[] from;
+		final Integer[] to;
+		final int[] weight;
+		int size;
+
+		Edges(int nodeCount, int capacity) {
+			nodes = new Integer[nodeCount];
+			for (int n = 0; n < nodeCount; n++)
+				nodes[n] = n;
+			from = new Integer[capacity];
+			to = new Integer[capacity];
+			weight = new int[capacity];
+		}
+
+		void add(int from, int to, Random random) {
+			this.from[size] = nodes[from];
+			this.to[size] = nodes[to];
+			weight[size] = 1 + random.nextInt(100);
+			size++;
+		}
+
+		GraphSearcher<Integer> build() {
+			return new GraphSearcher<Integer>(from, to, weight);
+		}
+
+		GraphSearcher<Integer> build(NodeOrder order) {
+			return new GraphSearcher<Integer>(from, to, weight, false, order);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * throughput of the depth first and the breadth first searchers, and how it
+ * scales with the threads of the pool and changes with the {@link NodeOrder}<br>
+ * every search enumerates the paths from one node without repeat, the max
+ * depth is the lowest one which reaches PATH_BUDGET paths, so the searches do
+ * similar work whatever the shape is
+ * 
+ * @author trytocatch@163.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+	private static final int PATH_BUDGET = 200000;
+	private static final long SEED = 20161018;
+
+	@Param({ "RANDOM", "GRID", "SCALE_FREE", "DENSE" })
+	public GraphShape shape;
+
+	@Param({ "1000", "100000" })
+	public int nodeCount;
+
+	@Param({ "false", "true" })
+	public boolean depthFirst;
+
+	/**
+	 * 1 means no fork at all
+	 */
+	@Param({ "1", "2", "4", "8" })
+	public int parallelism;
+
+	@Param({ "FIRST_SEEN", "DEGREE", "CUTHILL_MCKEE" })
+	public NodeOrder order;
+
+	private GraphSearcher<Integer> searcher;
+	private ForkJoinPool pool;
+	private Integer start;
+	private int maxDepth;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		GraphShape.Edges edges = shape.generate(nodeCount, new Random(SEED));
+		searcher = edges.build(order);
+		start = edges.from[0];
+		pool = GraphSearcher.createPool(parallelism, "bench");
+		for (long count = 0, last = -1; count < PATH_BUDGET && count != last;) {
+			last = count;
+			count = searcher.search(new PathEnumerator(start, ++maxDepth, false, false), pool)[0];
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public long search() {
+		return searcher.search(new PathEnumerator(start, maxDepth, depthFirst, parallelism > 1), pool)[0];
+	}
+
+	/**
+	 * enumerate and count the paths no deeper than maxDepth, unlike
+	 * {@link PathCounter} it visits every path
+	 */
+	static class PathEnumerator extends Task<Integer, long[]> {
+		private final int maxDepth;
+		private final boolean fork;
+
+		PathEnumerator(Integer start, int maxDepth, boolean depthFirst, boolean fork) {
+			super(start);
+			this.maxDepth = maxDepth;
+			this.fork = fork;
+			setDepthFirst(depthFirst);
+			setStopFurtherSearchOnRepeat(true);
+			setMaxParallelTask(fork ? 1000 : 1);
+		}
+
+		@Override
+		protected ReturnState check(List<Integer> steps, int depth, int weight, long[] resultHolder,
+				Boolean isRepeated) {
+			if (isRepeated)
+				return ReturnState.STOP;
+			resultHolder[0]++;
+			if (depth >= maxDepth)
+				return ReturnState.STOP;
+			return fork ? ReturnState.FORK_CONTINUE : ReturnState.CONTINUE;
+		}
+
+		@Override
+		public long[] createResultHolder() {
+			return new long[1];
+		}
+
+		@Override
+		public ForkResultHandler<long[]> getForkResultHandler() {
+			return new ForkResultHandler<long[]>() {
+				@Override
+				public long[] fork(long[] result) {
+					return new long[1];
+				}
+
+				@Override
+				public long[] merge(long[] result1, long[] result2) {
+					result2[0] += result1[0];
+					return result2;
+				}
+
+				@Override
+				public boolean hasResult(long[] result) {
+					return result[0] > 0;
+				}
+			};
+		}
+	}
+}
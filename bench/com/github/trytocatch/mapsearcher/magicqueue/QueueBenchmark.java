@@ -0,0 +1,93 @@
+package com.github.trytocatch.mapsearcher.magicqueue;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * offer/poll/moveTail throughput of the 3 implementations, the values are
+ * random in [0, maxValue), so the bigger ones take several array elements in
+ * ByteImpl and ShortImpl
+ * 
+ * @author trytocatch@163.com
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+	private static final int BATCH = 4096;
+
+	@Param({ "BYTE", "SHORT", "INTEGER" })
+	public String impl;
+
+	@Param({ "200", "60000", "1000000" })
+	public int maxValue;
+
+	private int[] values;
+	private MagicArrayQueue queue;
+	/**
+	 * holds BATCH values after tailStart, for moveTail
+	 */
+	private MagicArrayQueue filled;
+	private long tailStart;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(20161018);
+		values = new int[BATCH];
+		for (int n = 0; n < BATCH; n++)
+			values[n] = random.nextInt(maxValue);
+		queue = create();
+		filled = create();
+		tailStart = filled.getTail();
+		for (int value : values)
+			filled.offer(value);
+	}
+
+	private MagicArrayQueue create() {
+		if ("BYTE".equals(impl))
+			return new ByteImpl(BATCH);
+		else if ("SHORT".equals(impl))
+			return new ShortImpl(BATCH);
+		else
+			return new IntegerImpl(BATCH);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int offerPoll() {
+		for (int value : values)
+			queue.offer(value);
+		int sum = 0;
+		for (int n = 0; n < BATCH; n++)
+			sum += queue.poll();
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public long moveTail() {
+		filled.moveTail(tailStart, BATCH);
+		long tail = filled.getTail();
+		// put the tail back, so every invocation walks the same BATCH values
+		// and nothing is left behind
+		filled.moveTail(tailStart, 0);
+		return tail;
+	}
+}
@@ -0,0 +1,166 @@
+package com.github.trytocatch.mapsearcher;
+
+/**
+ * the settings of a search and the callbacks of the searchers, extend
+ * {@link Task} or {@link IndexedTask} instead of this
+ * 
+ * @author trytocatch@163.com
+ */
+public abstract class AbstractTask<N, R> {
+		protected enum ReturnState {
+			/**
+			 * means continue further search on this path
+			 */
+			CONTINUE,
+			/**
+			 * means fork(no guarantee) and continue further search on this path<br>
+			 * the searcher forks only while the workers are running out of
+			 * queued tasks, you should override {@link #getForkResultHandler}
+			 */
+			FORK_CONTINUE,
+			/**
+			 * means stop further search on this path
+			 */
+			STOP,
+			/**
+			 * means all search works have done
+			 */
+			BREAK
+		}
+
+		private N start;
+
+		private boolean isDepthFirst;
+
+		private boolean stopFurtherSearchOnRepeat;
+		
+		private int maxParallelTask = 1000;
+
+		private boolean levelParallel;
+
+		/**
+		 * 
+		 * @param start
+		 *            start node or null
+		 */
+		AbstractTask(N start) {
+			this.start = start;
+		}
+
+		public N getStart() {
+			return start;
+		}
+
+		/**
+		 * called by the searchers, steps[depth] has been set by
+		 * {@link SearchInfo#setStep}
+		 */
+		ReturnState doCheck(SearchInfo<N, R> info, int depth, int weight, Boolean isRepeated) {
+			return doCheck(info, info.result, depth, weight, isRepeated);
+		}
+
+		/**
+		 * check with the given result holder, the info may be shared by
+		 * several tasks, see {@link BatchTask}
+		 */
+		abstract ReturnState doCheck(SearchInfo<N, ?> info, R resultHolder, int depth, int weight,
+				Boolean isRepeated);
+
+		/**
+		 * create the result holder of a fork task, the info is the one being
+		 * forked
+		 */
+		R forkResult(SearchInfo<N, R> info) {
+			return getForkResultHandler().fork(info.result);
+		}
+
+		/**
+		 * whether the breadth first searcher should maintain
+		 * {@link SearchInfo#mask} for this task
+		 */
+		boolean isMasked() {
+			return false;
+		}
+
+		/**
+		 * whether the searchers need to maintain the List steps for this task
+		 */
+		boolean isStepsNeeded() {
+			return true;
+		}
+
+		public abstract R createResultHolder();
+
+		public boolean isDepthFirst() {
+			return isDepthFirst;
+		}
+
+		public void setDepthFirst(boolean isDepthFirst) {
+			this.isDepthFirst = isDepthFirst;
+		}
+
+		public boolean isStopFurtherSearchOnRepeat() {
+			return stopFurtherSearchOnRepeat;
+		}
+
+		/**
+		 * turn on this will make the argument 'Boolean isRepeated' of method
+		 * check meaningful, it won't be null and it will stop further search on
+		 * current path while repeat appears
+		 * 
+		 * @param stopFurtherSearchOnRepeat
+		 */
+		public void setStopFurtherSearchOnRepeat(boolean stopFurtherSearchOnRepeat) {
+			this.stopFurtherSearchOnRepeat = stopFurtherSearchOnRepeat;
+		}
+
+		/**
+		 * @see #setMaxParallelTask(int)
+		 */
+		public int getMaxParallelTask() {
+			return maxParallelTask;
+		}
+
+		/**
+		 * the max count of the tasks searching at the same time for one
+		 * search, the main one included, if it is not greater than 1,
+		 * FORK_CONTINUE works as CONTINUE<br>
+		 * within it, how many tasks to fork is decided by the searcher
+		 * according to the load of the workers
+		 * 
+		 * @param maxParallelTask
+		 */
+		public void setMaxParallelTask(int maxParallelTask) {
+			this.maxParallelTask = maxParallelTask;
+		}
+		
+		public boolean isLevelParallel() {
+			return levelParallel;
+		}
+
+		/**
+		 * only for the breadth first search, if it's true and
+		 * getMaxParallelTask() is greater than 1, every depth level is split
+		 * among the workers, instead of forking on FORK_CONTINUE, so a wide
+		 * level is searched by all the workers, the results are merged by
+		 * {@link #getForkResultHandler()}<br>
+		 * the nodes of all the levels are kept to rebuild the paths, so it
+		 * needs more memory than the normal breadth first search
+		 * 
+		 * @param levelParallel
+		 */
+		public void setLevelParallel(boolean levelParallel) {
+			this.levelParallel = levelParallel;
+		}
+
+		/**
+		 * whether the search is run by {@link LevelSearcher}
+		 */
+		boolean isLevelSearch() {
+			return !isDepthFirst && levelParallel && maxParallelTask > 1;
+		}
+		
+		public ForkResultHandler<R> getForkResultHandler(){
+			throw new UnsupportedOperationException();
+		}
+	}
\ No newline at end of file
@@ -0,0 +1,278 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.Arrays;
+
+/**
+ * weight data stored in compressed sparse row form<br>
+ * the edges of node m are [offsets[m], offsets[m+1]) in targets and weights,
+ * ordered by target index<br>
+ * row nodeCount is the dummy info for all start nodes, it links every node
+ * which has edges, with weight 0<br>
+ * the rows are kept in int arrays by {@link ArrayAdjacency}, or read from a
+ * mapped file by {@link MappedAdjacency}, {@link DeltaAdjacency} changes the
+ * weights of another one
+ *
+ * @author trytocatch@163.com
+ */
+abstract class Adjacency {
+	/**
+	 * max size of all the rows, some VMs can't allocate an array of
+	 * Integer.MAX_VALUE
+	 */
+	static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+	final int nodeCount;
+	/**
+	 * whether any edge has a negative weight, the shortest path searchers
+	 * can't work with it
+	 */
+	final boolean hasNegativeWeight;
+
+	Adjacency(int nodeCount, boolean hasNegativeWeight) {
+		this.nodeCount = nodeCount;
+		this.hasNegativeWeight = hasNegativeWeight;
+	}
+
+	/**
+	 * @param nodeCount
+	 * @param from
+	 *            index of the source node of each edge
+	 * @param to
+	 *            index of the target node of each edge
+	 * @param weight
+	 *            weight of each edge, the later one wins if an edge appears
+	 *            more than once
+	 * @return
+	 */
+	static Adjacency build(int nodeCount, int[] from, int[] to, int[] weight) {
+		int edgeCount = from.length;
+		checkSize((long) edgeCount + nodeCount);
+		int[] offsets = new int[nodeCount + 2];
+		for (int n = 0; n < edgeCount; n++)
+			offsets[from[n] + 1]++;
+		for (int m = 0; m < nodeCount; m++)
+			offsets[m + 1] += offsets[m];
+		// sort keys: target in the high half, edge order in the low half, so
+		// duplicated edges are adjacent and the later one comes last
+		long[] keys = new long[edgeCount];
+		int[] pos = Arrays.copyOf(offsets, nodeCount);
+		for (int n = 0; n < edgeCount; n++)
+			keys[pos[from[n]]++] = ((long) to[n] << 32) | n;
+		pos = null;
+		int[] targets = new int[edgeCount + nodeCount];
+		int[] weights = new int[edgeCount + nodeCount];
+		int size = 0;
+		int starts = 0;
+		boolean hasNegativeWeight = false;
+		for (int m = 0, begin = 0, end; m < nodeCount; m++) {
+			end = offsets[m + 1];
+			offsets[m] = size;
+			if (begin < end) {
+				Arrays.sort(keys, begin, end);
+				for (int e = begin; e < end; e++) {
+					if (e + 1 < end && (keys[e + 1] >>> 32) == (keys[e] >>> 32))
+						continue;
+					targets[size] = (int) (keys[e] >>> 32);
+					weights[size] = weight[(int) keys[e]];
+					if (weights[size] < 0)
+						hasNegativeWeight = true;
+					size++;
+				}
+				starts++;
+			}
+			begin = end;
+		}
+		offsets[nodeCount] = size;
+		for (int m = 0; m < nodeCount; m++) {
+			if (offsets[m] < offsets[m + 1]) {
+				targets[size] = m;
+				weights[size] = 0;
+				size++;
+			}
+		}
+		offsets[nodeCount + 1] = size;
+		assert size == offsets[nodeCount] + starts;
+		if (size < targets.length) {
+			targets = Arrays.copyOf(targets, size);
+			weights = Arrays.copyOf(weights, size);
+		}
+		return new ArrayAdjacency(nodeCount, offsets, targets, weights, hasNegativeWeight);
+	}
+
+	/**
+	 * @return the adjacency with every edge reversed, row m of it holds the
+	 *         edges which end with node m
+	 */
+	Adjacency reverse() {
+		int edgeCount = getEdgeCount();
+		int[] from = new int[edgeCount];
+		int[] to = new int[edgeCount];
+		int[] weight = new int[edgeCount];
+		for (int m = 0; m < nodeCount; m++) {
+			for (int e = begin(m), end = end(m); e < end; e++) {
+				from[e] = target(e);
+				to[e] = m;
+				weight[e] = weight(e);
+			}
+		}
+		return build(nodeCount, from, to, weight);
+	}
+
+	/**
+	 * @param newIndexes
+	 *            newIndexes[m] is the new index of node m, see
+	 *            {@link NodeOrder}
+	 * @return the adjacency with the nodes renumbered
+	 */
+	Adjacency renumber(int[] newIndexes) {
+		int edgeCount = getEdgeCount();
+		int[] from = new int[edgeCount];
+		int[] to = new int[edgeCount];
+		int[] weight = new int[edgeCount];
+		for (int m = 0; m < nodeCount; m++) {
+			for (int e = begin(m), end = end(m); e < end; e++) {
+				from[e] = newIndexes[m];
+				to[e] = newIndexes[target(e)];
+				weight[e] = weight(e);
+			}
+		}
+		return build(nodeCount, from, to, weight);
+	}
+
+	/**
+	 * @param keys
+	 *            the changed edges, from in the high half, to in the low half,
+	 *            they must exist
+	 * @param newWeights
+	 * @return a copy with the weights of the edges changed, it shares the
+	 *         structure with this one, see {@link DeltaAdjacency}
+	 */
+	Adjacency updateWeights(long[] keys, int[] newWeights) {
+		return DeltaAdjacency.update(this, keys, newWeights);
+	}
+
+	/**
+	 * merge the changes into the rows, the unchanged rows are copied as they
+	 * are
+	 * 
+	 * @param nodeCount
+	 *            node count of the new adjacency, not less than this one's
+	 * @param keys
+	 *            the changed edges, from in the high half, to in the low half,
+	 *            ascending
+	 * @param newWeights
+	 *            weights of the changed edges
+	 * @param removed
+	 *            whether the changed edge is removed
+	 * @return
+	 */
+	Adjacency patch(int nodeCount, long[] keys, int[] newWeights, boolean[] removed) {
+		int capacity = checkSize((long) getEdgeCount() + keys.length + nodeCount);
+		int[] offsets = new int[nodeCount + 2];
+		int[] targets = new int[capacity];
+		int[] weights = new int[capacity];
+		int size = 0;
+		boolean hasNegativeWeight = false;
+		for (int m = 0, k = 0; m < nodeCount; m++) {
+			offsets[m] = size;
+			int e = 0, end = 0;
+			if (m < this.nodeCount) {
+				e = begin(m);
+				end = end(m);
+			}
+			for (boolean changed;;) {
+				changed = k < keys.length && (int) (keys[k] >>> 32) == m;
+				if (changed && (e == end || (int) keys[k] <= target(e))) {
+					if (e < end && target(e) == (int) keys[k])
+						e++;// replaced or removed
+					if (!removed[k]) {
+						targets[size] = (int) keys[k];
+						weights[size] = newWeights[k];
+						size++;
+					}
+					k++;
+				} else if (e < end) {
+					targets[size] = target(e);
+					weights[size] = weight(e);
+					size++;
+					e++;
+				} else {
+					break;
+				}
+			}
+			for (int n = offsets[m]; n < size && !hasNegativeWeight; n++)
+				hasNegativeWeight = weights[n] < 0;
+		}
+		offsets[nodeCount] = size;
+		for (int m = 0; m < nodeCount; m++) {
+			if (offsets[m] < offsets[m + 1]) {
+				targets[size] = m;
+				weights[size] = 0;
+				size++;
+			}
+		}
+		offsets[nodeCount + 1] = size;
+		if (size < capacity) {
+			targets = Arrays.copyOf(targets, size);
+			weights = Arrays.copyOf(weights, size);
+		}
+		return new ArrayAdjacency(nodeCount, offsets, targets, weights, hasNegativeWeight);
+	}
+
+	/**
+	 * the rows, including the dummy one, are indexed by int
+	 * 
+	 * @param size
+	 * @return the size
+	 */
+	static int checkSize(long size) {
+		if (size > MAX_SIZE)
+			throw new IllegalArgumentException("There are too many edges, the rows need " + size + " entries");
+		return (int) size;
+	}
+
+	/**
+	 * @return count of the real edges, the dummy row isn't included
+	 */
+	int getEdgeCount() {
+		return begin(nodeCount);
+	}
+
+	/**
+	 * @param node
+	 *            0~nodeCount+1, begin(nodeCount+1) is the size of all the rows
+	 * @return index of the first edge of the node
+	 */
+	abstract int begin(int node);
+
+	abstract int end(int node);
+
+	abstract int target(int edge);
+
+	abstract int weight(int edge);
+
+	/**
+	 * @return index of the edge from->to, or -1 if there is no such edge
+	 */
+	int edgeIndex(int from, int to) {
+		int low = begin(from), high = end(from) - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int target = target(mid);
+			if (target < to)
+				low = mid + 1;
+			else if (target > to)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * the edge from->to must exist
+	 */
+	int getWeight(int from, int to) {
+		return weight(edgeIndex(from, to));
+	}
+}
\ No newline at end of file
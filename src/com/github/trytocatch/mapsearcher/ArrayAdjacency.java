@@ -0,0 +1,47 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.Arrays;
+
+/**
+ * {@link Adjacency} kept in int arrays
+ *
+ * @author trytocatch@163.com
+ */
+final class ArrayAdjacency extends Adjacency {
+	final int[] offsets;
+	final int[] targets;
+	final int[] weights;
+
+	ArrayAdjacency(int nodeCount, int[] offsets, int[] targets, int[] weights, boolean hasNegativeWeight) {
+		super(nodeCount, hasNegativeWeight);
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+	}
+
+	@Override
+	int begin(int node) {
+		return offsets[node];
+	}
+
+	@Override
+	int end(int node) {
+		return offsets[node + 1];
+	}
+
+	@Override
+	int target(int edge) {
+		return targets[edge];
+	}
+
+	@Override
+	int weight(int edge) {
+		return weights[edge];
+	}
+
+	@Override
+	int edgeIndex(int from, int to) {
+		int index = Arrays.binarySearch(targets, offsets[from], offsets[from + 1], to);
+		return index >= 0 ? index : -1;
+	}
+}
@@ -0,0 +1,165 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * several breadth first tasks with the same start node and settings run as one
+ * search, they share the expansion of the paths<br>
+ * every path carries a mask, bit n of it means the path is still searched for
+ * task n, see {@link SearchInfo#mask}, the result holder is an array of the
+ * result holders of the tasks
+ * 
+ * @author trytocatch@163.com
+ */
+class BatchTask<N> extends AbstractTask<N, Object[]> {
+		/**
+		 * the masks are positive ints
+		 */
+		static final int MAX_TASK_COUNT = 31;
+
+		private final AbstractTask<N, Object>[] tasks;
+		private final int fullMask;
+		private final boolean stepsNeeded;
+		/**
+		 * bits of the tasks which have returned BREAK
+		 */
+		private final AtomicInteger breakMask = new AtomicInteger();
+		private final ForkResultHandler<Object[]> forkResultHandler = new BatchForkResultHandler();
+
+		/**
+		 * @param tasks
+		 *            breadth first tasks with the same start node,
+		 *            isStopFurtherSearchOnRepeat() and isLevelSearch(), no
+		 *            more than {@link #MAX_TASK_COUNT}
+		 */
+		@SuppressWarnings("unchecked")
+		BatchTask(List<? extends AbstractTask<N, ?>> tasks) {
+			super(tasks.get(0).getStart());
+			if (tasks.size() > MAX_TASK_COUNT)
+				throw new IllegalArgumentException("Too many tasks, more than " + MAX_TASK_COUNT);
+			this.tasks = (AbstractTask<N, Object>[]) tasks.toArray(new AbstractTask<?, ?>[tasks.size()]);
+			fullMask = (int) ((1L << this.tasks.length) - 1);
+			boolean stepsNeeded = false;
+			// the smallest one which allows forking, a forked path may carry
+			// any of the tasks
+			int maxParallelTask = Integer.MAX_VALUE;
+			for (AbstractTask<N, ?> task : this.tasks) {
+				stepsNeeded |= task.isStepsNeeded();
+				if (task.getMaxParallelTask() > 1)
+					maxParallelTask = Math.min(maxParallelTask, task.getMaxParallelTask());
+			}
+			if (maxParallelTask == Integer.MAX_VALUE)
+				maxParallelTask = 1;
+			this.stepsNeeded = stepsNeeded;
+			setDepthFirst(false);
+			setStopFurtherSearchOnRepeat(this.tasks[0].isStopFurtherSearchOnRepeat());
+			setMaxParallelTask(maxParallelTask);
+			setLevelParallel(this.tasks[0].isLevelSearch());
+		}
+
+		/**
+		 * check the step for each task of the mask of the path, the path is
+		 * forked only if all of them return FORK_CONTINUE
+		 */
+		@Override
+		ReturnState doCheck(SearchInfo<N, ?> info, Object[] resultHolder, int depth, int weight,
+				Boolean isRepeated) {
+			int childMask = 0;
+			boolean fork = true;
+			for (int mask = info.mask & fullMask & ~breakMask.get(), n; mask != 0; mask &= mask - 1) {
+				n = Integer.numberOfTrailingZeros(mask);
+				switch (tasks[n].doCheck(info, resultHolder[n], depth, weight, isRepeated)) {
+				case FORK_CONTINUE:
+					childMask |= 1 << n;
+					if (tasks[n].getMaxParallelTask() <= 1)
+						fork = false;
+					break;
+				case CONTINUE:
+					childMask |= 1 << n;
+					fork = false;
+					break;
+				case BREAK:
+					for (int b; ((b = breakMask.get()) & (1 << n)) == 0;)
+						breakMask.compareAndSet(b, b | (1 << n));
+					break;
+				default:
+				}
+			}
+			info.childMask = childMask;
+			if (childMask != 0)
+				return fork ? ReturnState.FORK_CONTINUE : ReturnState.CONTINUE;
+			return breakMask.get() == fullMask ? ReturnState.BREAK : ReturnState.STOP;
+		}
+
+		@Override
+		boolean isStepsNeeded() {
+			return stepsNeeded;
+		}
+
+		@Override
+		boolean isMasked() {
+			return true;
+		}
+
+		@Override
+		public Object[] createResultHolder() {
+			Object[] results = new Object[tasks.length];
+			for (int n = 0; n < tasks.length; n++)
+				results[n] = tasks[n].createResultHolder();
+			return results;
+		}
+
+		/**
+		 * only the tasks of the forked path get a result holder
+		 */
+		@Override
+		Object[] forkResult(SearchInfo<N, Object[]> info) {
+			Object[] results = new Object[tasks.length];
+			for (int mask = info.childMask & fullMask, n; mask != 0; mask &= mask - 1) {
+				n = Integer.numberOfTrailingZeros(mask);
+				results[n] = tasks[n].getForkResultHandler().fork(info.result[n]);
+			}
+			return results;
+		}
+
+		@Override
+		public ForkResultHandler<Object[]> getForkResultHandler() {
+			return forkResultHandler;
+		}
+
+		/**
+		 * forks, merges and checks the result holders of the tasks one by one,
+		 * a null result holder means the task isn't searched on the path
+		 */
+		private class BatchForkResultHandler implements ForkResultHandler<Object[]> {
+			@Override
+			public Object[] fork(Object[] old) {
+				Object[] results = new Object[tasks.length];
+				for (int n = 0; n < tasks.length; n++) {
+					if (old[n] != null)
+						results[n] = tasks[n].getForkResultHandler().fork(old[n]);
+				}
+				return results;
+			}
+
+			@Override
+			public Object[] merge(Object[] result1, Object[] result2) {
+				for (int n = 0; n < tasks.length; n++) {
+					if (result1[n] != null)
+						result2[n] = result2[n] == null ? result1[n]
+								: tasks[n].getForkResultHandler().merge(result1[n], result2[n]);
+				}
+				return result2;
+			}
+
+			@Override
+			public boolean hasResult(Object[] result) {
+				for (int n = 0; n < tasks.length; n++) {
+					if (result[n] != null && tasks[n].getForkResultHandler().hasResult(result[n]))
+						return true;
+				}
+				return false;
+			}
+		}
+	}
\ No newline at end of file
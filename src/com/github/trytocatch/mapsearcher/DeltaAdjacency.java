@@ -0,0 +1,228 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.Arrays;
+
+/**
+ * {@link Adjacency} with some weights changed, it shares the rows of the base
+ * one and keeps the changed weights in an open addressing hash table of edge
+ * indexes, so a commit which only changes weights costs the count of the
+ * changed edges instead of copying all the weights<br>
+ * the changes are merged into a copy of the weights once they outnumber the
+ * square root of the size of the rows, so a commit costs O(sqrt(size))
+ * amortized, the copy replaces the weights of an {@link ArrayAdjacency}, the
+ * rows of a {@link MappedAdjacency} stay in its file and only the weights are
+ * copied to the heap
+ *
+ * @author trytocatch@163.com
+ */
+final class DeltaAdjacency extends Adjacency {
+	private static final int FREE = -1;
+	/**
+	 * an {@link ArrayAdjacency} keeps at least this many changed edges
+	 * before they are merged
+	 */
+	static final int MIN_MERGE_SIZE = 64;
+
+	/**
+	 * an empty table, the smallest one the hash works with
+	 */
+	private static final int[] NO_EDGES = { FREE, FREE };
+
+	/**
+	 * never a DeltaAdjacency
+	 */
+	private final Adjacency base;
+	/**
+	 * the weights of all the edges merged before, null if they are read from
+	 * base
+	 */
+	private final int[] baseWeights;
+	/**
+	 * count of the negative weights in base or baseWeights
+	 */
+	private final int baseNegatives;
+	/**
+	 * the changed edge indexes, FREE for the empty slots
+	 */
+	private final int[] edges;
+	private final int[] weights;
+	private final int size;
+	/**
+	 * 32 - log2(edges.length), the hash takes the high bits
+	 */
+	private final int shift;
+
+	private DeltaAdjacency(Adjacency base, int[] baseWeights, int baseNegatives, int[] edges, int[] weights,
+			int size, boolean hasNegativeWeight) {
+		super(base.nodeCount, hasNegativeWeight);
+		this.base = base;
+		this.baseWeights = baseWeights;
+		this.baseNegatives = baseNegatives;
+		this.edges = edges;
+		this.weights = weights;
+		this.size = size;
+		shift = shift(edges.length);
+	}
+
+	/**
+	 * @param data
+	 * @param keys
+	 *            the changed edges, from in the high half, to in the low half,
+	 *            they must exist
+	 * @param newWeights
+	 * @return data with the weights of the edges changed, it shares the rows
+	 *         with data
+	 */
+	static Adjacency update(Adjacency data, long[] keys, int[] newWeights) {
+		Adjacency base = data;
+		int[] baseWeights = data instanceof ArrayAdjacency ? ((ArrayAdjacency) data).weights : null;
+		int baseNegatives = data.hasNegativeWeight ? -1 : 0;// -1 if it isn't counted yet
+		int[] oldEdges = NO_EDGES;
+		int[] oldWeights = NO_EDGES;
+		int oldSize = 0;
+		if (data instanceof DeltaAdjacency) {
+			DeltaAdjacency delta = (DeltaAdjacency) data;
+			base = delta.base;
+			baseWeights = delta.baseWeights;
+			baseNegatives = delta.baseNegatives;
+			oldEdges = delta.edges;
+			oldWeights = delta.weights;
+			oldSize = delta.size;
+		}
+		int rowsSize = base.begin(base.nodeCount + 1);
+		if ((long) oldSize + keys.length > Math.max(MIN_MERGE_SIZE, (int) Math.sqrt(rowsSize)))
+			return merge(base, baseWeights, oldEdges, oldWeights, keys, newWeights);
+		if (baseNegatives < 0) {
+			// once for a base, the later commits carry it
+			baseNegatives = 0;
+			for (int e = 0, end = base.getEdgeCount(); e < end; e++) {
+				if ((baseWeights == null ? base.weight(e) : baseWeights[e]) < 0)
+					baseNegatives++;
+			}
+		}
+		int capacity = 16;
+		while (capacity < 0x40000000 && capacity < (oldSize + keys.length) << 1)
+			capacity <<= 1;
+		int[] edges = new int[capacity];
+		int[] weights = new int[capacity];
+		Arrays.fill(edges, FREE);
+		int shift = shift(capacity);
+		int size = 0;
+		for (int p = 0; p < oldEdges.length; p++) {
+			if (oldEdges[p] != FREE && put(edges, weights, shift, oldEdges[p], oldWeights[p]))
+				size++;
+		}
+		for (int n = 0; n < keys.length; n++) {
+			if (put(edges, weights, shift, base.edgeIndex((int) (keys[n] >>> 32), (int) keys[n]), newWeights[n]))
+				size++;
+		}
+		// the negative weights of base which aren't changed, and the changed
+		// ones which are negative
+		int negatives = baseNegatives;
+		for (int p = 0; p < capacity; p++) {
+			if (edges[p] != FREE) {
+				if ((baseWeights == null ? base.weight(edges[p]) : baseWeights[edges[p]]) < 0)
+					negatives--;
+				if (weights[p] < 0)
+					negatives++;
+			}
+		}
+		return new DeltaAdjacency(base, baseWeights, baseNegatives, edges, weights, size, negatives > 0);
+	}
+
+	/**
+	 * copy the weights of base with the changes applied
+	 */
+	private static Adjacency merge(Adjacency base, int[] baseWeights, int[] oldEdges, int[] oldWeights,
+			long[] keys, int[] newWeights) {
+		int[] weights;
+		if (baseWeights != null) {
+			weights = baseWeights.clone();
+		} else {
+			weights = new int[base.begin(base.nodeCount + 1)];
+			for (int e = 0; e < weights.length; e++)
+				weights[e] = base.weight(e);
+		}
+		for (int p = 0; p < oldEdges.length; p++) {
+			if (oldEdges[p] != FREE)
+				weights[oldEdges[p]] = oldWeights[p];
+		}
+		for (int n = 0; n < keys.length; n++)
+			weights[base.edgeIndex((int) (keys[n] >>> 32), (int) keys[n])] = newWeights[n];
+		int negatives = 0;
+		for (int e = 0, end = base.getEdgeCount(); e < end; e++) {
+			if (weights[e] < 0)
+				negatives++;
+		}
+		if (base instanceof ArrayAdjacency) {
+			ArrayAdjacency array = (ArrayAdjacency) base;
+			return new ArrayAdjacency(array.nodeCount, array.offsets, array.targets, weights, negatives > 0);
+		}
+		return new DeltaAdjacency(base, weights, negatives, NO_EDGES, NO_EDGES, 0, negatives > 0);
+	}
+
+	private static int shift(int capacity) {
+		return Integer.numberOfLeadingZeros(capacity) + 1;
+	}
+
+	private static int slot(int edge, int shift) {
+		return (edge * 0x9E3779B9) >>> shift;
+	}
+
+	/**
+	 * @return the slot of the edge, or -1 if it isn't changed
+	 */
+	private static int find(int[] edges, int shift, int edge) {
+		int mask = edges.length - 1;
+		for (int p = slot(edge, shift), v;; p = (p + 1) & mask) {
+			v = edges[p];
+			if (v == edge)
+				return p;
+			if (v == FREE)
+				return -1;
+		}
+	}
+
+	/**
+	 * @return whether the edge is new in the table
+	 */
+	private static boolean put(int[] edges, int[] weights, int shift, int edge, int weight) {
+		int mask = edges.length - 1;
+		for (int p = slot(edge, shift), v;; p = (p + 1) & mask) {
+			v = edges[p];
+			if (v == edge || v == FREE) {
+				edges[p] = edge;
+				weights[p] = weight;
+				return v == FREE;
+			}
+		}
+	}
+
+	@Override
+	int begin(int node) {
+		return base.begin(node);
+	}
+
+	@Override
+	int end(int node) {
+		return base.end(node);
+	}
+
+	@Override
+	int target(int edge) {
+		return base.target(edge);
+	}
+
+	@Override
+	int weight(int edge) {
+		int p = find(edges, shift, edge);
+		if (p >= 0)
+			return weights[p];
+		return baseWeights == null ? base.weight(edge) : baseWeights[edge];
+	}
+
+	@Override
+	int edgeIndex(int from, int to) {
+		return base.edgeIndex(from, to);
+	}
+}
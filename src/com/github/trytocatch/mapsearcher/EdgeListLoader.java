@@ -0,0 +1,375 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * build a {@link GraphSearcher} from an edge list file, one edge per line:
+ * from, to and weight separated by the delimiter, the blank lines and the
+ * lines starting with '#' are skipped, the text is UTF-8<br>
+ * the file is split into chunks at line ends, the chunks are mapped and
+ * parsed in parallel, each chunk collects its edges into int arrays with its
+ * own node dictionary, then the dictionaries are merged into the node
+ * mapping, so no N[] from/to arrays are built
+ * 
+ * @author trytocatch@163.com
+ */
+public class EdgeListLoader<N> {
+	private final NodeParser<N> parser;
+	private char delimiter = ',';
+	private int chunkSize = 0x2000000;
+	private boolean reverseIndex;
+	private NodeOrder nodeOrder = NodeOrder.FIRST_SEEN;
+	private ForkJoinPool pool;
+
+	public EdgeListLoader(NodeParser<N> parser) {
+		if (parser == null)
+			throw new IllegalArgumentException("parser can't be null");
+		this.parser = parser;
+	}
+
+	public char getDelimiter() {
+		return delimiter;
+	}
+
+	/**
+	 * @param delimiter
+	 *            ',' by default, it must be an ASCII character
+	 */
+	public void setDelimiter(char delimiter) {
+		if (delimiter >= 0x80 || delimiter == '\n')
+			throw new IllegalArgumentException("Illegal delimiter: " + delimiter);
+		this.delimiter = delimiter;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @param chunkSize
+	 *            bytes of each chunk to parse in parallel, 32M by default
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("chunkSize must be positive");
+		this.chunkSize = chunkSize;
+	}
+
+	public boolean isReverseIndex() {
+		return reverseIndex;
+	}
+
+	/**
+	 * @see GraphSearcher#GraphSearcher(Object[], Object[], int[], boolean)
+	 */
+	public void setReverseIndex(boolean reverseIndex) {
+		this.reverseIndex = reverseIndex;
+	}
+
+	public NodeOrder getNodeOrder() {
+		return nodeOrder;
+	}
+
+	/**
+	 * @see GraphSearcher#GraphSearcher(Object[], Object[], int[], boolean,
+	 *      NodeOrder)
+	 */
+	public void setNodeOrder(NodeOrder nodeOrder) {
+		if (nodeOrder == null)
+			throw new IllegalArgumentException("nodeOrder can't be null");
+		this.nodeOrder = nodeOrder;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * @param pool
+	 *            the pool to parse the chunks, null means
+	 *            {@link ForkJoinPool#commonPool()}
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public GraphSearcher<N> load(File file) throws IOException {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			for (long start = 0, end; start < size; start = end) {
+				end = lineEnd(channel, Math.min(start + chunkSize, size), size);
+				if (end - start > Integer.MAX_VALUE)
+					throw new IOException("The line at byte " + start + " is too long");
+				chunks.add(new Chunk(channel.map(MapMode.READ_ONLY, start, end - start)));
+			}
+		} finally {
+			channel.close();// the mappings are still valid
+		}
+		ForkJoinPool pool = this.pool != null ? this.pool : ForkJoinPool.commonPool();
+		List<Future<Chunk>> futures = pool.invokeAll(chunks);
+		ConcurrentHashMap<N, Integer> mapper = new ConcurrentHashMap<N, Integer>();
+		List<N> nodes = new ArrayList<N>();
+		int edgeCount = 0;
+		int lines = 0;
+		for (Future<Chunk> future : futures) {
+			Chunk chunk = get(future, lines);
+			lines += chunk.lines;
+			if ((long) edgeCount + chunk.size > Integer.MAX_VALUE)
+				throw new IOException("There are too many edges");
+			edgeCount += chunk.size;
+			// map the local indexes of the chunk to the global ones
+			chunk.globalIndexes = new int[chunk.nodes.size()];
+			for (int n = 0; n < chunk.nodes.size(); n++) {
+				N node = chunk.nodes.get(n);
+				Integer index = mapper.get(node);
+				if (index == null) {
+					if (nodes.size() == GraphSearcher.MAX_NODE_COUNT)
+						throw new IllegalArgumentException(
+								"There are too many nodes, more than " + GraphSearcher.MAX_NODE_COUNT);
+					mapper.put(node, index = nodes.size());
+					nodes.add(node);
+				}
+				chunk.globalIndexes[n] = index;
+			}
+			chunk.nodes = null;
+		}
+		int[] from = new int[edgeCount];
+		int[] to = new int[edgeCount];
+		int[] weight = new int[edgeCount];
+		int offset = 0;
+		for (Chunk chunk : chunks) {
+			for (int n = 0; n < chunk.size; n++) {
+				from[offset + n] = chunk.globalIndexes[chunk.from[n]];
+				to[offset + n] = chunk.globalIndexes[chunk.to[n]];
+			}
+			System.arraycopy(chunk.weight, 0, weight, offset, chunk.size);
+			offset += chunk.size;
+			chunk.from = chunk.to = chunk.weight = null;
+		}
+		@SuppressWarnings("unchecked")
+		N[] unmapper = (N[]) nodes.toArray();
+		nodes = null;
+		Adjacency data = Adjacency.build(unmapper.length, from, to, weight);
+		from = to = weight = null;
+		data = nodeOrder.apply(data, mapper, unmapper);
+		return new GraphSearcher<N>(mapper, new GraphSnapshot<N>(0, mapper, unmapper, unmapper.length, data,
+				reverseIndex ? data.reverse() : null));
+	}
+
+	/**
+	 * @return the position after the first '\n' from position, or size
+	 */
+	private static long lineEnd(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(0x1000);
+		while (position < size) {
+			buffer.clear();
+			int count = channel.read(buffer, position);
+			if (count < 0)
+				break;
+			for (int n = 0; n < count; n++) {
+				if (buffer.get(n) == '\n')
+					return position + n + 1;
+			}
+			position += count;
+		}
+		return size;
+	}
+
+	/**
+	 * @param lines
+	 *            count of the lines before the chunk, to report the line
+	 *            number of an illegal edge
+	 */
+	private static <T> T get(Future<T> future, int lines) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IllegalLineException) {
+				IllegalLineException illegal = (IllegalLineException) cause;
+				throw new IOException("Illegal edge at line " + ((long) lines + illegal.line) + ": " + illegal.text,
+						illegal.getCause());
+			}
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * a part of the file which contains whole lines, the nodes are indexed by
+	 * the order they appear in it
+	 */
+	private class Chunk implements Callable<Chunk> {
+		private final MappedByteBuffer buffer;
+		List<N> nodes = new ArrayList<N>();
+		int[] globalIndexes;
+		int[] from = new int[0x400];
+		int[] to = new int[0x400];
+		int[] weight = new int[0x400];
+		int size;
+		/**
+		 * count of the lines parsed, the blank ones included
+		 */
+		int lines;
+		private byte[] text = new byte[0x40];
+
+		Chunk(MappedByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public Chunk call() {
+			HashMap<String, Integer> dictionary = new HashMap<String, Integer>();
+			int limit = buffer.limit();
+			for (int lineStart = 0, lineEnd; lineStart < limit; lineStart = lineEnd + 1) {
+				lineEnd = lineStart;
+				while (lineEnd < limit && buffer.get(lineEnd) != '\n')
+					lineEnd++;
+				lines++;
+				int begin = skipBlank(lineStart, lineEnd);
+				if (begin == lineEnd || buffer.get(begin) == '#')
+					continue;
+				int d1 = indexOf(delimiter, begin, lineEnd);
+				int d2 = d1 < 0 ? -1 : indexOf(delimiter, d1 + 1, lineEnd);
+				if (d2 < 0)
+					throw illegalLine(lineStart, lineEnd);
+				if (size == from.length) {
+					from = Arrays.copyOf(from, size << 1);
+					to = Arrays.copyOf(to, size << 1);
+					weight = Arrays.copyOf(weight, size << 1);
+				}
+				from[size] = node(dictionary, begin, d1, lineStart, lineEnd);
+				to[size] = node(dictionary, d1 + 1, d2, lineStart, lineEnd);
+				weight[size] = parseWeight(d2 + 1, lineEnd, lineStart);
+				size++;
+			}
+			return this;
+		}
+
+		private int node(HashMap<String, Integer> dictionary, int begin, int end, int lineStart, int lineEnd) {
+			begin = skipBlank(begin, end);
+			while (end > begin && isBlank(buffer.get(end - 1)))
+				end--;
+			if (begin == end)
+				throw illegalLine(lineStart, lineEnd);
+			if (end - begin > text.length)
+				text = new byte[end - begin];
+			for (int n = begin; n < end; n++)
+				text[n - begin] = buffer.get(n);
+			String key = new String(text, 0, end - begin, StandardCharsets.UTF_8);
+			Integer index = dictionary.get(key);
+			if (index == null) {
+				N node;
+				try {
+					node = parser.parse(key);
+				} catch (RuntimeException e) {
+					throw illegalLine(lineStart, lineEnd, e);
+				}
+				if (node == null)
+					throw illegalLine(lineStart, lineEnd);
+				dictionary.put(key, index = nodes.size());
+				nodes.add(node);
+			}
+			return index;
+		}
+
+		private int parseWeight(int begin, int lineEnd, int lineStart) {
+			int end = lineEnd;
+			begin = skipBlank(begin, end);
+			while (end > begin && isBlank(buffer.get(end - 1)))
+				end--;
+			boolean negative = begin < end && buffer.get(begin) == '-';
+			if (negative || (begin < end && buffer.get(begin) == '+'))
+				begin++;
+			if (begin == end)
+				throw illegalLine(lineStart, lineEnd);
+			long value = 0;
+			for (int n = begin, digit; n < end; n++) {
+				digit = buffer.get(n) - '0';
+				if (digit < 0 || digit > 9 || (value = value * 10 + digit) > Integer.MAX_VALUE + 1L)
+					throw illegalLine(lineStart, lineEnd);
+			}
+			value = negative ? -value : value;
+			if (value > Integer.MAX_VALUE)
+				throw illegalLine(lineStart, lineEnd);
+			return (int) value;
+		}
+
+		private int indexOf(char c, int begin, int end) {
+			for (int n = begin; n < end; n++) {
+				if (buffer.get(n) == c)
+					return n;
+			}
+			return -1;
+		}
+
+		private int skipBlank(int begin, int end) {
+			while (begin < end && isBlank(buffer.get(begin)))
+				begin++;
+			return begin;
+		}
+
+		private boolean isBlank(byte b) {
+			return b == ' ' || b == '\t' || b == '\r';
+		}
+
+		private IllegalLineException illegalLine(int lineStart, int lineEnd) {
+			return illegalLine(lineStart, lineEnd, null);
+		}
+
+		/**
+		 * @param cause
+		 *            thrown by the parser, or null
+		 */
+		private IllegalLineException illegalLine(int lineStart, int lineEnd, RuntimeException cause) {
+			byte[] line = new byte[Math.min(lineEnd - lineStart, 0x100)];
+			for (int n = 0; n < line.length; n++)
+				line[n] = buffer.get(lineStart + n);
+			return new IllegalLineException(lines, new String(line, StandardCharsets.UTF_8).trim(), cause);
+		}
+	}
+
+	/**
+	 * thrown by a chunk, which doesn't know the count of the lines before it,
+	 * {@link EdgeListLoader#get} turns it into an IOException with the line
+	 * number in the file
+	 */
+	private static class IllegalLineException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		/**
+		 * line number in the chunk, from 1
+		 */
+		final int line;
+		final String text;
+
+		IllegalLineException(int line, String text, Throwable cause) {
+			super(cause);
+			this.line = line;
+			this.text = text;
+		}
+	}
+}
@@ -1,30 +1,115 @@
 package com.github.trytocatch.mapsearcher;
 
-import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.atomic.AtomicReference;
 
-import com.github.trytocatch.mapsearcher.Task.ReturnState;
+import com.github.trytocatch.mapsearcher.AbstractTask.ReturnState;
 
-class ForkTask<N, R> extends RecursiveAction {
+/**
+ * a part of one search, the root task runs the main search, the others are
+ * forked from it or from each other, a task completes after all the tasks it
+ * forked have completed<br>
+ * the results are merged as a reduction tree: when a task completes, its
+ * result and the merged results of its subtasks are merged into the
+ * joinResult of its parent, so no result is kept after it has been merged
+ */
+class ForkTask<N, R> extends CountedCompleter<Void> {
 	private static final long serialVersionUID = -4548185314537935131L;
 	Searcher<N> searcher;
 	SearchInfo<N, R> info;
+	/**
+	 * completed with the merged result when the root task completes, null if
+	 * no one is waiting for it asynchronously
+	 */
+	CompletableFuture<R> future;
+	private final ForkTask<N, R> parent;
+	/**
+	 * merged result of the subtasks which have completed
+	 */
+	private final AtomicReference<R> joinResult = new AtomicReference<R>();
+	/**
+	 * whether the result of this task should be merged, it's discarded if
+	 * the search is terminated before this task finishes
+	 */
+	private boolean keepResult;
 
-	ForkTask(Searcher<N> searcher, SearchInfo<N, R> info) {
+	ForkTask(ForkTask<N, R> parent, Searcher<N> searcher, SearchInfo<N, R> info) {
+		super(parent);
+		this.parent = parent;
 		this.searcher = searcher;
 		this.info = info;
+		info.forkTask = this;
 	}
 
 	@Override
-	protected void compute() {
+	public void compute() {
 		ReturnState rs = searcher.doSearch(info);
-		if (!info.phaser.isTerminated()) {
-			if (info.task.getForkResultHandler().hasResult(info.result))
-				info.mergeResult();
-			if (rs == ReturnState.BREAK) {
-				info.phaser.forceTermination();
-			} else {
-				info.phaser.arriveAndDeregister();
+		info.control.removeTask();
+		info.control.collect(info.stats);
+		if (!info.control.isTerminated() || info.control.isExpired()) {
+			keepResult = true;
+			// after the deadline every task breaks, the results of the others
+			// are still to be merged
+			if (rs == ReturnState.BREAK && !info.control.isExpired())
+				info.control.terminate();
+		}
+		tryComplete();
+	}
+
+	@Override
+	public void onCompletion(CountedCompleter<?> caller) {
+		R result = joinResult.getAndSet(null);
+		SearchStats stats = info.control.stats;
+		long begin = stats == null ? 0 : System.nanoTime();
+		if (parent == null) {
+			// the result of the root task is the one returned by the search
+			if (result != null)
+				info.result = info.task.getForkResultHandler().merge(result, info.result);
+			if (stats != null)
+				stats.addMergeNanos(System.nanoTime() - begin);
+			info.control.finish(info.task);
+			if (future != null)
+				future.complete(info.result);
+		} else {
+			ForkResultHandler<R> handler = info.task.getForkResultHandler();
+			if (keepResult && handler.hasResult(info.result))
+				result = result == null ? info.result : handler.merge(info.result, result);
+			if (stats != null)
+				stats.addMergeNanos(System.nanoTime() - begin);
+			if (result != null)
+				parent.join(result);
+			info = null;// let the search data be collected
+		}
+	}
+
+	/**
+	 * merge the result into joinResult without locking, if another task is
+	 * merging its result at the same time, take its result out and retry with
+	 * the merged one
+	 */
+	private void join(R result) {
+		ForkResultHandler<R> handler = info.task.getForkResultHandler();
+		for (R r;;) {
+			r = joinResult.get();
+			if (r == null) {
+				if (joinResult.compareAndSet(null, result))
+					return;
+			} else if (joinResult.compareAndSet(r, null)) {
+				SearchStats stats = info.control.stats;
+				long begin = stats == null ? 0 : System.nanoTime();
+				result = handler.merge(r, result);
+				if (stats != null)
+					stats.addMergeNanos(System.nanoTime() - begin);
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	@Override
+	public boolean onExceptionalCompletion(Throwable ex, CountedCompleter<?> caller) {
+		info.control.terminate();
+		if (future != null)
+			future.completeExceptionally(ex);
+		return true;
+	}
+}
@@ -0,0 +1,95 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * collects changes of the graph and commits them as one new version, see
+ * {@link GraphSearcher#edit()}<br>
+ * the searches in flight keep running on the version they started with<br>
+ * an editor is not thread safe, it can be reused after commit
+ * 
+ * @author trytocatch@163.com
+ */
+public class GraphEditor<N> {
+	static final int ADD_NODE = 0;
+	static final int ADD_EDGE = 1;
+	static final int UPDATE_WEIGHT = 2;
+	static final int REMOVE_EDGE = 3;
+
+	static class Change<N> {
+		final int type;
+		final N from;
+		final N to;
+		final int weight;
+
+		Change(int type, N from, N to, int weight) {
+			this.type = type;
+			this.from = from;
+			this.to = to;
+			this.weight = weight;
+		}
+	}
+
+	private final GraphSearcher<N> searcher;
+	private List<Change<N>> changes = new ArrayList<Change<N>>();
+
+	GraphEditor(GraphSearcher<N> searcher) {
+		this.searcher = searcher;
+	}
+
+	/**
+	 * add a node without any edge, nothing happens if it exists
+	 */
+	public GraphEditor<N> addNode(N node) {
+		checkNode(node);
+		changes.add(new Change<N>(ADD_NODE, node, null, 0));
+		return this;
+	}
+
+	/**
+	 * add an edge, the nodes are added if they don't exist, the weight is
+	 * updated if the edge exists
+	 */
+	public GraphEditor<N> addEdge(N from, N to, int weight) {
+		checkNode(from);
+		checkNode(to);
+		changes.add(new Change<N>(ADD_EDGE, from, to, weight));
+		return this;
+	}
+
+	/**
+	 * the edge must exist when this change is applied
+	 */
+	public GraphEditor<N> updateWeight(N from, N to, int weight) {
+		changes.add(new Change<N>(UPDATE_WEIGHT, from, to, weight));
+		return this;
+	}
+
+	/**
+	 * the edge must exist when this change is applied, the nodes are kept
+	 */
+	public GraphEditor<N> removeEdge(N from, N to) {
+		changes.add(new Change<N>(REMOVE_EDGE, from, to, 0));
+		return this;
+	}
+
+	/**
+	 * apply the changes in order and publish the new version, if any change
+	 * is illegal, none of them is applied
+	 * 
+	 * @return the new version
+	 * @throws IllegalArgumentException
+	 *             if an edge to update or remove doesn't exist
+	 */
+	public long commit() {
+		List<Change<N>> toCommit = changes;
+		changes = new ArrayList<Change<N>>();
+		return searcher.commit(toCommit);
+	}
+
+	private static void checkNode(Object node) {
+		if (node == null)
+			throw new IllegalArgumentException("node can't be null");
+	}
+}
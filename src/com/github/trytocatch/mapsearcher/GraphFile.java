@@ -0,0 +1,148 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * the binary file of a prepared graph, the rows are mapped when it's opened,
+ * so the searches run on the file directly without building anything<br>
+ * layout, the ints are little endian:<br>
+ * header: magic, format version, graph version(long), nodeCount, size of the
+ * rows, size of the reverse rows(-1 if absent), flags<br>
+ * rows: offsets[nodeCount+2], targets[size], weights[size], then the same for
+ * the reverse rows if present<br>
+ * nodes: written by the {@link NodeSerializer} in index order
+ * 
+ * @author trytocatch@163.com
+ */
+class GraphFile {
+	private static final int MAGIC = 0x4D534746;// "MSGF"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+	private static final int FLAG_NEGATIVE_WEIGHT = 1;
+	private static final int FLAG_REVERSE_NEGATIVE_WEIGHT = 2;
+
+	static <N> void write(GraphSnapshot<N> graph, File file, NodeSerializer<N> serializer) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			Adjacency data = graph.data;
+			Adjacency reverseData = graph.reverseData;
+			ByteBuffer buffer = ByteBuffer.allocateDirect(0x10000).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(graph.version).putInt(graph.nodeCount);
+			buffer.putInt(data.begin(graph.nodeCount + 1));
+			buffer.putInt(reverseData == null ? -1 : reverseData.begin(graph.nodeCount + 1));
+			buffer.putInt((data.hasNegativeWeight ? FLAG_NEGATIVE_WEIGHT : 0)
+					| (reverseData != null && reverseData.hasNegativeWeight ? FLAG_REVERSE_NEGATIVE_WEIGHT : 0));
+			writeRows(channel, buffer, data);
+			if (reverseData != null)
+				writeRows(channel, buffer, reverseData);
+			flush(channel, buffer);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+			for (int n = 0; n < graph.nodeCount; n++)
+				serializer.write(out, graph.unmapper[n]);
+			out.flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static void writeRows(FileChannel channel, ByteBuffer buffer, Adjacency data) throws IOException {
+		int size = data.begin(data.nodeCount + 1);
+		for (int m = 0; m <= data.nodeCount + 1; m++)
+			putInt(channel, buffer, data.begin(m));
+		for (int e = 0; e < size; e++)
+			putInt(channel, buffer, data.target(e));
+		for (int e = 0; e < size; e++)
+			putInt(channel, buffer, data.weight(e));
+	}
+
+	private static void putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+		if (buffer.remaining() < 4)
+			flush(channel, buffer);
+		buffer.putInt(value);
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	@SuppressWarnings("unchecked")
+	static <N> GraphSnapshot<N> read(File file, NodeSerializer<N> serializer, ConcurrentHashMap<N, Integer> mapper)
+			throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0)
+					break;
+			}
+			header.flip();
+			if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC)
+				throw new IOException("Not a graph file: " + file);
+			if (header.getInt() != FORMAT_VERSION)
+				throw new IOException("Unsupported graph file format: " + file);
+			long version = header.getLong();
+			int nodeCount = header.getInt();
+			int size = header.getInt();
+			int reverseSize = header.getInt();
+			int flags = header.getInt();
+			if (nodeCount < 0 || nodeCount > GraphSearcher.MAX_NODE_COUNT || size < 0 || size > Adjacency.MAX_SIZE
+					|| reverseSize < -1 || reverseSize > Adjacency.MAX_SIZE)
+				throw new IOException("Illegal graph file header: " + file);
+			long position = HEADER_SIZE;
+			Adjacency data = new MappedAdjacency(nodeCount, map(channel, position, nodeCount + 2),
+					map(channel, position += (nodeCount + 2) * 4L, size), map(channel, position += size * 4L, size),
+					(flags & FLAG_NEGATIVE_WEIGHT) != 0);
+			position += size * 4L;
+			Adjacency reverseData = null;
+			if (reverseSize >= 0) {
+				reverseData = new MappedAdjacency(nodeCount, map(channel, position, nodeCount + 2),
+						map(channel, position += (nodeCount + 2) * 4L, reverseSize),
+						map(channel, position += reverseSize * 4L, reverseSize),
+						(flags & FLAG_REVERSE_NEGATIVE_WEIGHT) != 0);
+				position += reverseSize * 4L;
+			}
+			channel.position(position);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			N[] unmapper = (N[]) new Object[nodeCount];
+			for (int n = 0; n < nodeCount; n++) {
+				unmapper[n] = serializer.read(in);
+				if (unmapper[n] == null || mapper.putIfAbsent(unmapper[n], n) != null)
+					throw new IOException("Illegal node in the graph file: " + unmapper[n]);
+			}
+			return new GraphSnapshot<N>(version, mapper, unmapper, nodeCount, data, reverseData);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static IntBuffer[] map(FileChannel channel, long position, int count) throws IOException {
+		if (position + count * 4L > channel.size())
+			throw new IOException("The graph file is truncated");
+		IntBuffer[] segments = new IntBuffer[Math.max(1,
+				(int) ((count + (1L << MappedAdjacency.SEGMENT_SHIFT) - 1) >>> MappedAdjacency.SEGMENT_SHIFT))];
+		for (int n = 0; n < segments.length; n++) {
+			long begin = (long) n << MappedAdjacency.SEGMENT_SHIFT;
+			long length = Math.min(count - begin, 1L << MappedAdjacency.SEGMENT_SHIFT);
+			segments[n] = channel.map(MapMode.READ_ONLY, position + begin * 4, length * 4)
+					.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		}
+		return segments;
+	}
+}
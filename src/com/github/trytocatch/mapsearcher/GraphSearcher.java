@@ -1,53 +1,155 @@
 package com.github.trytocatch.mapsearcher;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Phaser;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.github.trytocatch.mapsearcher.Task.ReturnState;
+import com.github.trytocatch.mapsearcher.AbstractTask.ReturnState;
 import com.github.trytocatch.mapsearcher.magicqueue.MagicArrayQueue;
 
 /**
  * @author trytocatch@163.com
  */
 public class GraphSearcher<N> {
-	private final int MAX_NODE_COUNT = 0x40000 + 1;
-
-	/**
-	 * if (unused << TRIM_THRESHOLD)>=array size, then do trim
-	 */
-	private final int TRIM_THRESHOLD = 2;
 	/**
-	 * ensure that: weight>WEIGHT_THRESHOLD
+	 * the node indexes share the non-negative int range with the marks in the
+	 * queue of {@link GraphSearcher.BreadthFirstSearcher}, which are above nodeCount, so the
+	 * upper half is kept for the marks
 	 */
-	private final int WEIGHT_THRESHOLD = Integer.MIN_VALUE + (MAX_NODE_COUNT - 1);
+	static final int MAX_NODE_COUNT = 1 << 30;
 
 	// do some mapping work to improve performance
-	private HashMap<N, Integer> mapper;// node to index
-	private N[] unmapper;// index to node
-	private int nodeCount;
+	private ConcurrentHashMap<N, Integer> mapper;// node to index
 	/**
-	 * weight data, it is a (nodeCount+1) * (nodeCount+1) double dimensional array<br>
-	 * data[nodeCount] is dummy info for all start nodes<br>
-	 * data[n][nodeCount] is trim info for data[n](0~nodeCount-1)<br>
+	 * the latest version of the graph data, see {@link GraphSnapshot}
 	 */
-	private int[][] data;
-	
-	private int rootMark;
+	private volatile GraphSnapshot<N> snapshot;
 
 	private final Searcher<N> breadthFirstSearcher;
 
 	private final Searcher<N> depthFirstSearcher;
 
+	private final Searcher<N> levelSearcher = new LevelSearcher<N>();
+
+	private final DijkstraSearcher dijkstraSearcher;
+
+	/**
+	 * the pool to run the searches, null means the common pool
+	 */
+	private volatile ForkJoinPool pool;
+
+	/**
+	 * whether to run the search in the caller thread without forking if the
+	 * pool rejects it
+	 */
+	private volatile boolean callerRunsOnRejection;
+
+	/**
+	 * receives the statistics of every search, null means they aren't
+	 * collected unless asked for
+	 */
+	private volatile SearchStatsListener statsListener;
+
+	/**
+	 * where the breadth first searches spill their queues, null means they
+	 * are kept in memory, see {@link #setFrontierSpill}
+	 */
+	private volatile File frontierSpillDirectory;
+	private volatile long frontierSpillBytes;
+
 	public GraphSearcher(N[] from, N[] to, int[] weight) {
+		this(from, to, weight, false);
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @param weight
+	 * @param reverseIndex
+	 *            whether to build the reverse adjacency index, which is
+	 *            needed by {@link #bidirectionalShortestPath}
+	 */
+	public GraphSearcher(N[] from, N[] to, int[] weight, boolean reverseIndex) {
+		this(from, to, weight, reverseIndex, NodeOrder.FIRST_SEEN);
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @param weight
+	 * @param reverseIndex
+	 *            see {@link #GraphSearcher(Object[], Object[], int[], boolean)}
+	 * @param order
+	 *            how to number the nodes, see {@link NodeOrder}
+	 */
+	public GraphSearcher(N[] from, N[] to, int[] weight, boolean reverseIndex, NodeOrder order) {
+		if (order == null)
+			throw new IllegalArgumentException("order can't be null");
 		initData(from, to, weight);
+		if (order != NodeOrder.FIRST_SEEN) {
+			GraphSnapshot<N> graph = snapshot;
+			snapshot = new GraphSnapshot<N>(graph.version, mapper, graph.unmapper, graph.nodeCount,
+					order.apply(graph.data, mapper, graph.unmapper), null);
+		}
+		if (reverseIndex) {
+			GraphSnapshot<N> graph = snapshot;
+			snapshot = new GraphSnapshot<N>(graph.version, mapper, graph.unmapper, graph.nodeCount, graph.data,
+					graph.data.reverse());
+		}
+		breadthFirstSearcher = new BreadthFirstSearcher();
+		depthFirstSearcher = new DepthFirstSearcher();
+		dijkstraSearcher = new DijkstraSearcher();
+	}
+
+	GraphSearcher(ConcurrentHashMap<N, Integer> mapper, GraphSnapshot<N> snapshot) {
+		this.mapper = mapper;
+		this.snapshot = snapshot;
 		breadthFirstSearcher = new BreadthFirstSearcher();
 		depthFirstSearcher = new DepthFirstSearcher();
+		dijkstraSearcher = new DijkstraSearcher();
+	}
+
+	/**
+	 * open a graph file written by {@link #save}, the edges are mapped
+	 * instead of loaded, only the nodes are read into the heap
+	 * 
+	 * @param file
+	 * @param serializer
+	 *            the one used to write the file
+	 * @return
+	 * @throws IOException
+	 */
+	public static <N> GraphSearcher<N> open(File file, NodeSerializer<N> serializer) throws IOException {
+		ConcurrentHashMap<N, Integer> mapper = new ConcurrentHashMap<N, Integer>();
+		return new GraphSearcher<N>(mapper, GraphFile.read(file, serializer, mapper));
+	}
+
+	/**
+	 * write the latest version of the graph to a file, including the reverse
+	 * adjacency index if it's built, see {@link #open}
+	 * 
+	 * @param file
+	 * @param serializer
+	 * @throws IOException
+	 */
+	public void save(File file, NodeSerializer<N> serializer) throws IOException {
+		GraphFile.write(snapshot, file, serializer);
 	}
 
 	protected void initData(N[] from, N[] to, int[] weight) {
@@ -56,19 +158,20 @@ public class GraphSearcher<N> {
 		if (from.length != to.length || to.length != weight.length)
 			throw new IllegalArgumentException("The arguments 'from' 'to' 'wight' have different length!");
 
-		mapNode2Index(from, to);
+		N[] unmapper = mapNode2Index(from, to);
 		
-		rebuildMapData(from, to, weight);
-		
-		markForFastIterationAndDoArrayTrim();
+		snapshot = new GraphSnapshot<N>(0, mapper, unmapper, unmapper.length,
+				rebuildMapData(unmapper.length, from, to, weight), null);
 	}
 	
 	@SuppressWarnings("unchecked")
-	private void mapNode2Index(N[] from, N[] to) {
-		mapper = new HashMap<N, Integer>();
-		List<N> list = new LinkedList<N>();
+	private N[] mapNode2Index(N[] from, N[] to) {
+		mapper = new ConcurrentHashMap<N, Integer>();
+		List<N> list = new ArrayList<N>();
 		for (Object nodes : new Object[] { from, to }) {
 			for (N node : (N[]) nodes) {
+				if (node == null)
+					throw new IllegalArgumentException("The nodes can't be null");
 				if (mapper.putIfAbsent(node, list.size()) == null){
 					if (list.size() == MAX_NODE_COUNT)
 						throw new IllegalArgumentException(
@@ -77,208 +180,937 @@ public class GraphSearcher<N> {
 				}
 			}
 		}
-		unmapper = (N[]) list.toArray();
-		nodeCount = unmapper.length;
+		return (N[]) list.toArray();
 	}
 
-	private void rebuildMapData(N[] from, N[] to, int[] weight) {
-		data = new int[nodeCount + 1][];
-		rootMark = data.length+1;
-		// for all start nodes, dummy[nodeCount]: trim info
-		int[] dummy = new int[nodeCount + 1];
-		Arrays.fill(dummy, WEIGHT_THRESHOLD);
+	private Adjacency rebuildMapData(int nodeCount, N[] from, N[] to, int[] weight) {
+		int[] indexFrom = new int[from.length];
+		int[] indexTo = new int[to.length];
 		for (int n = 0; n < from.length; n++) {
-			if (weight[n] <= WEIGHT_THRESHOLD)
-				throw new IllegalArgumentException("Weight can't be less than or equal " + WEIGHT_THRESHOLD);
-			int indexFrom = mapper.get(from[n]);
-			int indexTo = mapper.get(to[n]);
-			int[] distanceInfo = data[indexFrom];
-			if (distanceInfo == null) {
-				// distanceInfo[nodeCount]: trim info
-				distanceInfo = new int[nodeCount + 1];
-				Arrays.fill(distanceInfo, WEIGHT_THRESHOLD);
-				data[indexFrom] = distanceInfo;
-			}
-			dummy[indexFrom] = 0;
-			distanceInfo[indexTo] = weight[n];
+			indexFrom[n] = mapper.get(from[n]);
+			indexTo[n] = mapper.get(to[n]);
 		}
-		data[data.length - 1] = dummy;
+		return Adjacency.build(nodeCount, indexFrom, indexTo, weight);
 	}
-	
-	private void markForFastIterationAndDoArrayTrim() {
-		int[] info;
-		for (int m = 0; m < data.length; m++) {
-			info = data[m];
-			if (info != null) {
-				int firstIndex = 0;
-				int pos = 0;
-				for (int n = 0; n < info.length - 1; n++) {
-					if (info[n] != WEIGHT_THRESHOLD) {
-						// store the next index for faster iteration
-						if (pos < n) {
-							info[pos] = WEIGHT_THRESHOLD - n;
-							if (pos == 0)
-								firstIndex = n;
-						}
-						pos = n + 1;
-					}
+
+	/**
+	 * @return the version of the graph data, it increases on every commit,
+	 *         see {@link #edit()}
+	 */
+	public long getVersion() {
+		return snapshot.version;
+	}
+
+	/**
+	 * @return a new editor to change the graph, the changes take effect on
+	 *         commit, searches which have started keep running on the
+	 *         version they started with
+	 */
+	public GraphEditor<N> edit() {
+		return new GraphEditor<N>(this);
+	}
+
+	/**
+	 * add a node without any edge and commit at once, see {@link #edit()}
+	 */
+	public long addNode(N node) {
+		return edit().addNode(node).commit();
+	}
+
+	/**
+	 * add or update an edge and commit at once, see {@link #edit()}
+	 */
+	public long addEdge(N from, N to, int weight) {
+		return edit().addEdge(from, to, weight).commit();
+	}
+
+	/**
+	 * update the weight of an existing edge and commit at once, see
+	 * {@link #edit()}<br>
+	 * the new version shares the rows with the old one and only records the
+	 * changed weight, but every commit publishes a version, so change many
+	 * weights in one {@link #edit()}
+	 */
+	public long updateWeight(N from, N to, int weight) {
+		return edit().updateWeight(from, to, weight).commit();
+	}
+
+	/**
+	 * remove an existing edge and commit at once, see {@link #edit()}
+	 */
+	public long removeEdge(N from, N to) {
+		return edit().removeEdge(from, to).commit();
+	}
+
+	/**
+	 * apply the changes to the latest version and publish the result as a new
+	 * version, the weight-only changes share the rows with the old version,
+	 * see {@link DeltaAdjacency}, the others rebuild the rows by merging the
+	 * changes in
+	 */
+	synchronized long commit(List<GraphEditor.Change<N>> changes) {
+		GraphSnapshot<N> graph = snapshot;
+		List<N> newNodes = new ArrayList<N>();
+		Map<N, Integer> newIndexes = new HashMap<N, Integer>();
+		// key: from in the high half, to in the low half, value: weight, or
+		// null if removed
+		Map<Long, Integer> edges = new HashMap<Long, Integer>();
+		boolean structural = false;
+		for (GraphEditor.Change<N> change : changes) {
+			boolean adding = change.type == GraphEditor.ADD_NODE || change.type == GraphEditor.ADD_EDGE;
+			int from = commitIndexOf(graph, change.from, adding, newNodes, newIndexes);
+			if (change.type == GraphEditor.ADD_NODE)
+				continue;
+			int to = commitIndexOf(graph, change.to, adding, newNodes, newIndexes);
+			Long key = ((long) from << 32) | to;
+			boolean inData = from < graph.nodeCount && to < graph.nodeCount
+					&& graph.data.edgeIndex(from, to) >= 0;
+			boolean exists = edges.containsKey(key) ? edges.get(key) != null : inData;
+			if (!adding && !exists)
+				throw new IllegalArgumentException(
+						"There is no edge from " + change.from + " to " + change.to);
+			edges.put(key, change.type == GraphEditor.REMOVE_EDGE ? null : change.weight);
+			if (!inData || change.type == GraphEditor.REMOVE_EDGE)
+				structural = true;
+		}
+		int nodeCount = graph.nodeCount + newNodes.size();
+		if (nodeCount > MAX_NODE_COUNT)
+			throw new IllegalArgumentException("There are too many nodes, more than " + MAX_NODE_COUNT);
+		long[] keys = new long[edges.size()];
+		int n = 0;
+		for (Long key : edges.keySet())
+			keys[n++] = key;
+		Arrays.sort(keys);
+		int[] weights = new int[keys.length];
+		boolean[] removed = new boolean[keys.length];
+		for (n = 0; n < keys.length; n++) {
+			Integer weight = edges.get(keys[n]);
+			removed[n] = weight == null;
+			weights[n] = removed[n] ? 0 : weight;
+		}
+		Adjacency data, reverseData = null;
+		if (structural || !newNodes.isEmpty()) {
+			data = graph.data.patch(nodeCount, keys, weights, removed);
+			if (graph.reverseData != null) {
+				long[] reverseKeys = new long[keys.length];
+				Integer[] order = new Integer[keys.length];
+				for (n = 0; n < keys.length; n++) {
+					reverseKeys[n] = (keys[n] << 32) | (keys[n] >>> 32);
+					order[n] = n;
 				}
-				// try to trim the array
-				int unused = firstIndex + (nodeCount - pos);
-				if ((unused << TRIM_THRESHOLD) >= nodeCount) {
-					int[] trimmed = new int[nodeCount - unused + 1];
-					System.arraycopy(info, firstIndex, trimmed, 0, nodeCount - unused);
-					trimmed[trimmed.length - 1] = firstIndex;
-					data[m] = trimmed;
-				} else {
-					info[info.length - 1] = 0;
+				final long[] sortKeys = reverseKeys;
+				Arrays.sort(order, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer o1, Integer o2) {
+						return Long.compare(sortKeys[o1], sortKeys[o2]);
+					}
+				});
+				long[] sortedKeys = new long[keys.length];
+				int[] sortedWeights = new int[keys.length];
+				boolean[] sortedRemoved = new boolean[keys.length];
+				for (n = 0; n < keys.length; n++) {
+					sortedKeys[n] = reverseKeys[order[n]];
+					sortedWeights[n] = weights[order[n]];
+					sortedRemoved[n] = removed[order[n]];
 				}
+				reverseData = graph.reverseData.patch(nodeCount, sortedKeys, sortedWeights, sortedRemoved);
+			}
+		} else {
+			data = graph.data.updateWeights(keys, weights);
+			if (graph.reverseData != null) {
+				long[] reverseKeys = new long[keys.length];
+				for (n = 0; n < keys.length; n++)
+					reverseKeys[n] = (keys[n] << 32) | (keys[n] >>> 32);
+				reverseData = graph.reverseData.updateWeights(reverseKeys, weights);
 			}
 		}
+		N[] unmapper = graph.unmapper;
+		if (!newNodes.isEmpty()) {
+			// the old versions only see [0, graph.nodeCount), so the array can
+			// be shared as long as it's big enough
+			if (unmapper.length < nodeCount)
+				unmapper = Arrays.copyOf(unmapper,
+						Math.max(nodeCount, Math.min(MAX_NODE_COUNT, unmapper.length + (unmapper.length >>> 1))));
+			for (n = 0; n < newNodes.size(); n++) {
+				unmapper[graph.nodeCount + n] = newNodes.get(n);
+				mapper.put(newNodes.get(n), graph.nodeCount + n);
+			}
+		}
+		snapshot = new GraphSnapshot<N>(graph.version + 1, mapper, unmapper, nodeCount, data, reverseData);
+		return graph.version + 1;
 	}
 
-	private <T> void addOrSet(List<T> list, int index, T item) {
-		if (list.size() <= index)// list.size() < index won't happen
-			list.add(item);
-		else {
-			list.set(index, item);
-		}
+	private int commitIndexOf(GraphSnapshot<N> graph, N node, boolean adding, List<N> newNodes,
+			Map<N, Integer> newIndexes) {
+		int index = graph.indexOf(node);
+		if (index >= 0)
+			return index;
+		Integer newIndex = node == null ? null : newIndexes.get(node);
+		if (newIndex != null)
+			return newIndex;
+		if (!adding)
+			throw new IllegalArgumentException("Illegal node name: " + node);
+		newIndexes.put(node, index = graph.nodeCount + newNodes.size());
+		newNodes.add(node);
+		return index;
+	}
+
+	public int getNodeCount() {
+		return snapshot.nodeCount;
+	}
+
+	/**
+	 * @return index of the node, or -1 if it isn't in this graph
+	 */
+	public int getNodeIndex(N node) {
+		return snapshot.indexOf(node);
+	}
+
+	public N getNode(int index) {
+		return snapshot.getNode(index);
+	}
+
+	/**
+	 * map the steps of an {@link IndexedTask} to nodes
+	 * 
+	 * @param steps
+	 * @param depth
+	 *            steps[0]~steps[depth] will be mapped
+	 * @return a new list contains the nodes
+	 */
+	public List<N> getNodes(int[] steps, int depth) {
+		N[] unmapper = snapshot.unmapper;
+		List<N> nodes = new ArrayList<N>(depth + 1);
+		for (int n = 0; n <= depth; n++)
+			nodes.add(unmapper[steps[n]]);
+		return nodes;
 	}
 	
 	public int getWeight(List<N> steps){
+		GraphSnapshot<N> graph = snapshot;
+		Adjacency data = graph.data;
 		int weight = 0;
 		if(!steps.isEmpty()){
-			int index = mapper.get(steps.get(0));
-			int d[];
+			int index = graph.existingIndexOf(steps.get(0));
+			int edge;
 			for(int n = 1;n<steps.size();n++){
-				d = data[index];
-				index = mapper.get(steps.get(n));
-				weight+=d[index - d[d.length-1]];
+				edge = data.edgeIndex(index, index = graph.existingIndexOf(steps.get(n)));
+				if (edge < 0)
+					throw new IllegalArgumentException(
+							"There is no edge from " + steps.get(n - 1) + " to " + steps.get(n));
+				weight+=data.weight(edge);
 			}
 		}
 		return weight;
 	}
 
-	public <R> R search(Task<N, R> task) {
-		BitSet nodeBitSet = task.isStopFurtherSearchOnRepeat() ? new BitSet(nodeCount) : null;
-		N start = task.getStart();
-		SearchInfo<N, R> info = new SearchInfo<N, R>(new ArrayList<N>(0x2000), task.createResultHolder(), -1, 0, task,
-				nodeCount, nodeBitSet, null, new ConcurrentLinkedQueue<R>(), new Phaser(1));
-		Searcher<N> searcher;
-		if (task.isDepthFirst()) {
-			searcher = depthFirstSearcher;
-		} else {
-			info.stepIndexes = new ArrayList<Integer>(0x2000);
-			searcher = breadthFirstSearcher;
+	/**
+	 * find the shortest path from start to end, a path contains one edge at
+	 * least, so if start equals end, it finds the shortest cycle through
+	 * start<br>
+	 * all the weights must be non-negative, the paths heavier than
+	 * Integer.MAX_VALUE - 1 are ignored
+	 * 
+	 * @param start
+	 * @param end
+	 * @return the shortest path, or null if end is unreachable
+	 */
+	public ShortestPath<N> shortestPath(N start, N end) {
+		GraphSnapshot<N> graph = snapshot;
+		int startIndex = graph.existingIndexOf(start);
+		int endIndex = graph.existingIndexOf(end);
+		int[] dist = new int[graph.nodeCount];
+		int[] prev = new int[graph.nodeCount];
+		dijkstraSearcher.search(graph, startIndex, endIndex, null, dist, prev);
+		return graph.toShortestPath(startIndex, endIndex, dist, prev);
+	}
+
+	/**
+	 * A* search, find the shortest path from start to end with the help of a
+	 * heuristic, see {@link #shortestPath(Object, Object)}
+	 * 
+	 * @param start
+	 * @param end
+	 * @param heuristic
+	 *            estimates the remaining weight from a node to end
+	 * @return the shortest path, or null if end is unreachable
+	 */
+	public ShortestPath<N> shortestPath(N start, N end, Heuristic heuristic) {
+		if (heuristic == null)
+			throw new IllegalArgumentException("heuristic can't be null");
+		GraphSnapshot<N> graph = snapshot;
+		int startIndex = graph.existingIndexOf(start);
+		int endIndex = graph.existingIndexOf(end);
+		int[] dist = new int[graph.nodeCount];
+		int[] prev = new int[graph.nodeCount];
+		dijkstraSearcher.search(graph, startIndex, endIndex, heuristic, dist, prev);
+		return graph.toShortestPath(startIndex, endIndex, dist, prev);
+	}
+
+	/**
+	 * find the shortest path from start to end by growing the frontiers from
+	 * both ends alternately until they meet, see
+	 * {@link #shortestPath(Object, Object)}<br>
+	 * it needs the reverse adjacency index, see
+	 * {@link #GraphSearcher(Object[], Object[], int[], boolean)}
+	 * 
+	 * @param start
+	 * @param end
+	 * @return the shortest path, or null if end is unreachable
+	 */
+	public ShortestPath<N> bidirectionalShortestPath(N start, N end) {
+		return bidirectionalShortestPath(start, end, Integer.MAX_VALUE - 1);
+	}
+
+	/**
+	 * find the shortest path from start to end whose weight doesn't exceed
+	 * maxWeight, neither frontier grows beyond maxWeight, see
+	 * {@link #bidirectionalShortestPath(Object, Object)}
+	 * 
+	 * @param start
+	 * @param end
+	 * @param maxWeight
+	 * @return the shortest path, or null if there is no path within maxWeight
+	 */
+	public ShortestPath<N> bidirectionalShortestPath(N start, N end, int maxWeight) {
+		GraphSnapshot<N> graph = snapshot;
+		if (graph.reverseData == null)
+			throw new IllegalStateException("The reverse adjacency index isn't built");
+		int startIndex = graph.existingIndexOf(start);
+		int endIndex = graph.existingIndexOf(end);
+		int[] dist = new int[graph.nodeCount];
+		int[] prev = new int[graph.nodeCount];
+		if (startIndex == endIndex) {
+			// a cycle, there is no frontier to grow from the end
+			dijkstraSearcher.search(graph, startIndex, endIndex, null, dist, prev);
+			ShortestPath<N> path = graph.toShortestPath(startIndex, endIndex, dist, prev);
+			return path == null || path.getWeight() > maxWeight ? null : path;
 		}
-		if (start == null) {
+		int[] reverseDist = new int[graph.nodeCount];
+		int[] next = new int[graph.nodeCount];
+		int meet = dijkstraSearcher.searchBidirectional(graph, startIndex, endIndex, maxWeight, dist, prev,
+				reverseDist, next);
+		if (meet < 0)
+			return null;
+		N[] unmapper = graph.unmapper;
+		List<N> route = new ArrayList<N>();
+		for (int n = meet; n != startIndex; n = prev[n])
+			route.add(unmapper[n]);
+		route.add(unmapper[startIndex]);
+		Collections.reverse(route);
+		for (int n = meet; n != endIndex;)
+			route.add(unmapper[n = next[n]]);
+		return new ShortestPath<N>(dist[meet] + reverseDist[meet], route);
+	}
+
+	/**
+	 * find the shortest paths from start to every node, see
+	 * {@link #shortestPath(Object, Object)}
+	 * 
+	 * @param start
+	 * @return
+	 */
+	public ShortestPaths<N> shortestPaths(N start) {
+		GraphSnapshot<N> graph = snapshot;
+		int startIndex = graph.existingIndexOf(start);
+		int[] dist = new int[graph.nodeCount];
+		int[] prev = new int[graph.nodeCount];
+		dijkstraSearcher.search(graph, startIndex, -1, null, dist, prev);
+		return new ShortestPaths<N>(graph, startIndex, dist, prev);
+	}
+
+	/**
+	 * count the paths from start to end with exactly depth edges, the nodes
+	 * on a path may repeat, so it's what a task which doesn't stop on repeat
+	 * would count, but the paths aren't enumerated, the counts of all the
+	 * nodes are computed layer by layer in the pool set by
+	 * {@link #setPool(ForkJoinPool)}, see {@link PathCounter}
+	 *
+	 * @param start
+	 * @param end
+	 * @param depth
+	 * @return
+	 * @throws ArithmeticException
+	 *             if the count overflows long
+	 */
+	public long countPaths(N start, N end, int depth) {
+		if (depth < 0)
+			throw new IllegalArgumentException("depth can't be negative");
+		GraphSnapshot<N> graph = snapshot;
+		return createPathCounter(graph).countByDepth(graph.existingIndexOf(start), graph.existingIndexOf(end),
+				depth)[depth];
+	}
+
+	/**
+	 * count the paths from start to end with 1~maxDepth edges, see
+	 * {@link #countPaths(Object, Object, int)}
+	 *
+	 * @param start
+	 * @param end
+	 * @param maxDepth
+	 * @return
+	 * @throws ArithmeticException
+	 *             if the count overflows long
+	 */
+	public long countPathsWithinDepth(N start, N end, int maxDepth) {
+		if (maxDepth < 0)
+			throw new IllegalArgumentException("maxDepth can't be negative");
+		GraphSnapshot<N> graph = snapshot;
+		return sum(createPathCounter(graph).countByDepth(graph.existingIndexOf(start), graph.existingIndexOf(end),
+				maxDepth));
+	}
+
+	/**
+	 * count the paths from start to end whose weight doesn't exceed
+	 * maxWeight, a path contains one edge at least, see
+	 * {@link #countPaths(Object, Object, int)}<br>
+	 * the weights of the edges within maxWeight from start must be positive,
+	 * it keeps a count for each reachable node and each weight up to the
+	 * heaviest edge
+	 *
+	 * @param start
+	 * @param end
+	 * @param maxWeight
+	 * @return
+	 * @throws ArithmeticException
+	 *             if the count overflows long
+	 */
+	public long countPathsWithinWeight(N start, N end, int maxWeight) {
+		if (maxWeight < 0)
+			throw new IllegalArgumentException("maxWeight can't be negative");
+		GraphSnapshot<N> graph = snapshot;
+		return sum(createPathCounter(graph).countByWeight(graph.existingIndexOf(start), graph.existingIndexOf(end),
+				maxWeight));
+	}
+
+	private PathCounter createPathCounter(GraphSnapshot<N> graph) {
+		ForkJoinPool pool = this.pool;
+		return new PathCounter(graph.data, pool == null ? ForkJoinPool.commonPool() : pool);
+	}
+
+	/**
+	 * @return the sum of the counts, except the path with no edge
+	 */
+	private static long sum(long[] counts) {
+		long sum = 0;
+		for (int n = 1; n < counts.length; n++)
+			sum = Math.addExact(sum, counts[n]);
+		return sum;
+	}
+
+	/**
+	 * create a pool for searches, so they don't compete with the other users of
+	 * the common pool
+	 * 
+	 * @param parallelism
+	 * @param threadNamePrefix
+	 *            the threads are named threadNamePrefix-1, threadNamePrefix-2
+	 *            ..., they are daemon threads
+	 */
+	public static ForkJoinPool createPool(int parallelism, final String threadNamePrefix) {
+		if (threadNamePrefix == null)
+			throw new IllegalArgumentException("threadNamePrefix can't be null");
+		final AtomicInteger threadNumber = new AtomicInteger();
+		return new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+			@Override
+			public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName(threadNamePrefix + "-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		}, null, false);
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * set the default pool of {@link #search(AbstractTask)}
+	 * 
+	 * @param pool
+	 *            null means {@link ForkJoinPool#commonPool()}
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public boolean isCallerRunsOnRejection() {
+		return callerRunsOnRejection;
+	}
+
+	/**
+	 * @param callerRunsOnRejection
+	 *            if true, a search rejected by the pool (for example, the pool
+	 *            has been shut down) runs in the caller thread without
+	 *            forking, otherwise the RejectedExecutionException is thrown
+	 */
+	public void setCallerRunsOnRejection(boolean callerRunsOnRejection) {
+		this.callerRunsOnRejection = callerRunsOnRejection;
+	}
+
+	public SearchStatsListener getStatsListener() {
+		return statsListener;
+	}
+
+	/**
+	 * @param statsListener
+	 *            if it isn't null, every search collects the statistics and
+	 *            reports them to it, which costs a little on each check
+	 */
+	public void setStatsListener(SearchStatsListener statsListener) {
+		this.statsListener = statsListener;
+	}
+
+	public File getFrontierSpillDirectory() {
+		return frontierSpillDirectory;
+	}
+
+	public long getFrontierSpillBytes() {
+		return frontierSpillBytes;
+	}
+
+	/**
+	 * let the breadth first searches keep only a part of their queues in
+	 * memory, the rest is written to temp files and read back when it's
+	 * reached, for the searches whose frontier is larger than the heap
+	 * 
+	 * @param directory
+	 *            where to create the temp files, null means not to spill
+	 * @param maxQueueBytes
+	 *            the bytes of the queue kept in memory by each task of a
+	 *            search
+	 */
+	public void setFrontierSpill(File directory, long maxQueueBytes) {
+		if (directory != null && !directory.isDirectory())
+			throw new IllegalArgumentException("Not a directory: " + directory);
+		frontierSpillBytes = maxQueueBytes;
+		frontierSpillDirectory = directory;
+	}
+
+	/**
+	 * search in the pool set by {@link #setPool(ForkJoinPool)}
+	 */
+	public <R> R search(AbstractTask<N, R> task) {
+		return search(task, pool);
+	}
+
+	/**
+	 * @param task
+	 * @param pool
+	 *            the pool to run the search and the tasks forked from it,
+	 *            null means {@link ForkJoinPool#commonPool()}
+	 * @return
+	 */
+	public <R> R search(AbstractTask<N, R> task, ForkJoinPool pool) {
+		return search(task, pool, null);
+	}
+
+	/**
+	 * @param task
+	 * @param pool
+	 *            null means {@link ForkJoinPool#commonPool()}
+	 * @param stats
+	 *            a new SearchStats to collect what the search did, or null
+	 * @return
+	 */
+	public <R> R search(AbstractTask<N, R> task, ForkJoinPool pool, SearchStats stats) {
+		if (pool == null)
+			pool = ForkJoinPool.commonPool();
+		SearchInfo<N, R> info = createSearchInfo(task, stats);
+		if (checkStart(info))
+			invoke(pool, getSearcher(task), info);
+		else
+			finish(info);
+		return info.result;
+	}
+
+	/**
+	 * search in the pool set by {@link #setPool(ForkJoinPool)} without
+	 * blocking the caller
+	 * 
+	 * @see #searchAsync(AbstractTask, ForkJoinPool, long, TimeUnit)
+	 */
+	public <R> CompletableFuture<R> searchAsync(AbstractTask<N, R> task) {
+		return searchAsync(task, pool, 0, null);
+	}
+
+	/**
+	 * @see #searchAsync(AbstractTask, ForkJoinPool, long, TimeUnit)
+	 */
+	public <R> CompletableFuture<R> searchAsync(AbstractTask<N, R> task, ForkJoinPool pool) {
+		return searchAsync(task, pool, 0, null);
+	}
+
+	/**
+	 * @see #searchAsync(AbstractTask, ForkJoinPool, long, TimeUnit)
+	 */
+	public <R> CompletableFuture<R> searchAsync(AbstractTask<N, R> task, long timeout, TimeUnit unit) {
+		return searchAsync(task, pool, timeout, unit);
+	}
+
+	/**
+	 * start the search in the pool and return at once, the start node is
+	 * checked in the caller thread<br>
+	 * cancelling the future stops all the tasks of the search as soon as
+	 * possible, the results found by them are discarded
+	 * 
+	 * @param task
+	 * @param pool
+	 *            null means {@link ForkJoinPool#commonPool()}
+	 * @param timeout
+	 * @param unit
+	 *            null means no deadline, otherwise the search is stopped
+	 *            after the timeout, and the future is completed with the
+	 *            results found so far
+	 * @return the future of the merged result
+	 */
+	public <R> CompletableFuture<R> searchAsync(AbstractTask<N, R> task, ForkJoinPool pool, long timeout, TimeUnit unit) {
+		if (pool == null)
+			pool = ForkJoinPool.commonPool();
+		SearchInfo<N, R> info = createSearchInfo(task, null);
+		SearchFuture<R> future = new SearchFuture<R>(info.control);
+		if (!checkStart(info)) {
+			finish(info);
+			future.complete(info.result);
+			return future;
+		}
+		Searcher<N> searcher = getSearcher(task);
+		ForkTask<N, R> root = new ForkTask<N, R>(null, searcher, info);
+		root.future = future;
+		try {
+			pool.execute(root);
+		} catch (RejectedExecutionException e) {
+			if (!callerRunsOnRejection)
+				throw e;
+			if (unit != null)
+				future.setDeadline(timeout, unit);
+			info.forkTask = null;
 			searcher.doSearch(info);
-		} else {
-			Integer index = mapper.get(start);
-			if (index == null)
-				throw new IllegalArgumentException("Illegal node name: " + start);
-			info.steps.add(start);
-			ReturnState rs = task.check(info.unmodifiableSteps, 0, 0, info.result, false);
-			if (rs == ReturnState.CONTINUE || rs == ReturnState.FORK_CONTINUE) {
-				info.depth = 0;
-				info.startIndex = index;
-				if (!task.isDepthFirst()) {
-					info.stepIndexes.add(index);
-				}
-				searcher.doSearch(info);
+			finish(info);
+			future.complete(info.result);
+			return future;
+		}
+		if (unit != null)
+			future.setDeadline(timeout, unit);
+		return future;
+	}
+
+	/**
+	 * run the tasks in the pool set by {@link #setPool(ForkJoinPool)}
+	 * 
+	 * @see #searchAll(Collection, ForkJoinPool)
+	 */
+	public <R> List<R> searchAll(Collection<? extends AbstractTask<N, R>> tasks) {
+		return searchAll(tasks, pool);
+	}
+
+	/**
+	 * run the tasks at the same time, the breadth first tasks with the same
+	 * start node, isStopFurtherSearchOnRepeat() and level parallel setting
+	 * are searched together, they share the expansion of the paths, a path
+	 * is expanded as long as any of them continues on it
+	 * 
+	 * @param tasks
+	 * @param pool
+	 *            null means {@link ForkJoinPool#commonPool()}
+	 * @return the results, in the same order as the tasks
+	 */
+	@SuppressWarnings("unchecked")
+	public <R> List<R> searchAll(Collection<? extends AbstractTask<N, R>> tasks, ForkJoinPool pool) {
+		List<AbstractTask<N, R>> taskList = new ArrayList<AbstractTask<N, R>>(tasks);
+		Map<List<Object>, List<Integer>> groups = new LinkedHashMap<List<Object>, List<Integer>>();
+		List<CompletableFuture<R>> futures = new ArrayList<CompletableFuture<R>>(taskList.size());
+		for (int n = 0; n < taskList.size(); n++) {
+			AbstractTask<N, R> task = taskList.get(n);
+			futures.add(null);
+			if (task.isDepthFirst()) {
+				futures.set(n, searchAsync(task, pool));
+			} else {
+				List<Object> key = Arrays.<Object> asList(task.getStart(), task.isStopFurtherSearchOnRepeat(),
+						task.isLevelSearch());
+				List<Integer> group = groups.get(key);
+				if (group == null)
+					groups.put(key, group = new ArrayList<Integer>());
+				group.add(n);
 			}
 		}
-		info.phaser.arriveAndAwaitAdvance();
-		if (!info.resultQueue.isEmpty()) {
-			ForkResultHandler<R> handler = task.getForkResultHandler();
-			for (R result : info.resultQueue) {
-				info.result = handler.merge(result, info.result);
+		List<CompletableFuture<Object[]>> batchFutures = new ArrayList<CompletableFuture<Object[]>>();
+		List<List<Integer>> batches = new ArrayList<List<Integer>>();
+		for (List<Integer> group : groups.values()) {
+			for (int from = 0, to; from < group.size(); from = to) {
+				to = Math.min(from + BatchTask.MAX_TASK_COUNT, group.size());
+				if (to - from == 1) {
+					futures.set(group.get(from), searchAsync(taskList.get(group.get(from)), pool));
+					continue;
+				}
+				List<Integer> batch = group.subList(from, to);
+				List<AbstractTask<N, R>> batchTasks = new ArrayList<AbstractTask<N, R>>(batch.size());
+				for (int index : batch)
+					batchTasks.add(taskList.get(index));
+				batches.add(batch);
+				batchFutures.add(searchAsync(new BatchTask<N>(batchTasks), pool));
 			}
 		}
-		return info.result;
+		List<R> results = new ArrayList<R>(taskList.size());
+		for (int n = 0; n < taskList.size(); n++)
+			results.add(futures.get(n) == null ? null : join(futures.get(n)));
+		for (int n = 0; n < batches.size(); n++) {
+			Object[] batchResult = join(batchFutures.get(n));
+			List<Integer> batch = batches.get(n);
+			for (int m = 0; m < batch.size(); m++)
+				results.set(batch.get(m), (R) batchResult[m]);
+		}
+		return results;
+	}
+
+	/**
+	 * wait for the search and throw its exception as it is
+	 */
+	private static <R> R join(CompletableFuture<R> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw e;
+		}
+	}
+
+	/**
+	 * the search runs on the latest version of the graph
+	 * 
+	 * @param stats
+	 *            null means to collect the statistics only if there is a
+	 *            listener
+	 */
+	private <R> SearchInfo<N, R> createSearchInfo(AbstractTask<N, R> task, SearchStats stats) {
+		GraphSnapshot<N> graph = snapshot;
+		SearchStatsListener statsListener = this.statsListener;
+		if (stats == null && statsListener != null)
+			stats = new SearchStats();
+		PathSet nodeSet = task.isStopFurtherSearchOnRepeat() ? new PathSet(0x40) : null;
+		SearchInfo<N, R> info = new SearchInfo<N, R>(task.isStepsNeeded(), graph, task.createResultHolder(), -1, 0,
+				task, graph.nodeCount, nodeSet, new SearchControl(stats, statsListener));
+		if (stats != null)
+			info.stats = new SearchStats();
+		return info;
+	}
+
+	/**
+	 * finish a search which didn't run in a {@link ForkTask}
+	 */
+	private static void finish(SearchInfo<?, ?> info) {
+		info.control.collect(info.stats);
+		info.control.finish(info.task);
+	}
+
+	private Searcher<N> getSearcher(AbstractTask<N, ?> task) {
+		if (task.isDepthFirst())
+			return depthFirstSearcher;
+		return task.isLevelSearch() ? levelSearcher : breadthFirstSearcher;
 	}
 
+	/**
+	 * check the start node of the task, and make the info start from it
+	 * 
+	 * @return whether to search further
+	 */
+	private <R> boolean checkStart(SearchInfo<N, R> info) {
+		N start = info.task.getStart();
+		if (start == null)
+			return true;
+		int index = info.graph.existingIndexOf(start);
+		info.setStep(0, index);
+		ReturnState rs = info.task.doCheck(info, 0, 0, false);
+		if (info.stats != null)
+			info.stats.checked(rs, 0);
+		if (rs == ReturnState.CONTINUE || rs == ReturnState.FORK_CONTINUE) {
+			info.depth = 0;
+			info.startIndex = index;
+			info.rootForkable = rs == ReturnState.FORK_CONTINUE;
+			info.mask = info.childMask;
+			return true;
+		}
+		return false;
+	}
+
+	private <R> void invoke(ForkJoinPool pool, Searcher<N> searcher, SearchInfo<N, R> info) {
+		try {
+			pool.invoke(new ForkTask<N, R>(null, searcher, info));
+		} catch (RejectedExecutionException e) {
+			if (!callerRunsOnRejection)
+				throw e;
+			// forking is disabled without a ForkTask
+			info.forkTask = null;
+			searcher.doSearch(info);
+			finish(info);
+		}
+	}
+
+	/**
+	 * iterative depth first search, the state of each level is kept in int
+	 * arrays instead of the call stack, so the depth is not limited
+	 */
 	class DepthFirstSearcher extends Searcher<N> {
+		/**
+		 * check the termination and try to hand off the unexplored edges every
+		 * (mask+1) checks
+		 */
+		private static final int SPLIT_INTERVAL_MASK = 0x3F;
+
 		@Override
 		<R> ReturnState doSearch(SearchInfo<N, R> info) {
-			boolean toClearBitSet = false;
-			if (info.phaser.isTerminated())
+			if (info.control.isTerminated())
 				return ReturnState.BREAK;
-			try {
-				int[] lData;
-				if (info.startIndex == nodeCount) {
-					lData = data[data.length - 1];
-				} else {
-					if (info.startIndex < 0 || info.startIndex >= data.length - 1)
-						return ReturnState.STOP;
-					lData = data[info.startIndex];
-					if (info.nodeBitSet != null) {
-						info.nodeBitSet.set(info.startIndex);
-						toClearBitSet = true;
+			Adjacency data = info.graph.data;
+			int nodeCount = info.graph.nodeCount;
+			int root = info.startIndex;
+			if (root < 0 || root > nodeCount)
+				return ReturnState.STOP;
+			int baseDepth = info.depth;
+			int baseWeight = info.weight;
+			// level n is the node steps[baseDepth+n]
+			int[] nodes = new int[0x40];
+			int[] cursors = new int[0x40];// next edge to search
+			int[] ends = new int[0x40];
+			int[] weights = new int[0x40];// weight in total of the level
+			boolean[] forkables = new boolean[0x40];
+			boolean canFork = info.task.getMaxParallelTask() > 1;
+			int top = 0;
+			nodes[0] = root;
+			cursors[0] = info.edgeBegin >= 0 ? info.edgeBegin : data.begin(root);
+			ends[0] = info.edgeBegin >= 0 ? info.edgeEnd : data.end(root);
+			weights[0] = baseWeight;
+			forkables[0] = canFork && info.rootForkable;
+			if (root != nodeCount && info.nodeSet != null)
+				info.nodeSet.add(root);
+			SearchStats stats = info.stats;
+			if (stats != null)
+				stats.expandedNodes++;
+			ReturnState rs = ReturnState.STOP;
+			Boolean isRepeated = null;
+			for (int checks = 0, e, next, w, depth; top >= 0;) {
+				e = cursors[top];
+				if (e == ends[top]) {
+					if (nodes[top] != nodeCount && info.nodeSet != null)
+						info.nodeSet.remove(nodes[top]);
+					info.trimSteps(baseDepth + top);
+					top--;
+					continue;
+				}
+				cursors[top] = e + 1;
+				next = data.target(e);
+				w = weights[top] + data.weight(e);
+				depth = baseDepth + top + 1;
+				info.setStep(depth, next);
+				if (info.nodeSet != null)
+					isRepeated = info.nodeSet.contains(next);
+				ReturnState code = info.task.doCheck(info, depth, w, isRepeated);
+				if (stats != null)
+					stats.checked(code, depth);
+				if (code == ReturnState.BREAK) {
+					rs = ReturnState.BREAK;
+					break;
+				}
+				// stop on repeat
+				if ((code == ReturnState.FORK_CONTINUE || code == ReturnState.CONTINUE)
+						&& (isRepeated == null || !isRepeated)) {
+					info.depth = depth - 1;
+					info.weight = weights[top];
+					if (code != ReturnState.FORK_CONTINUE || !info.tryFork(this, next, w - weights[top])) {
+						if (info.control.isTerminated()) {
+							rs = ReturnState.BREAK;
+							break;
+						}
+						if (++top == nodes.length) {
+							nodes = Arrays.copyOf(nodes, top << 1);
+							cursors = Arrays.copyOf(cursors, top << 1);
+							ends = Arrays.copyOf(ends, top << 1);
+							weights = Arrays.copyOf(weights, top << 1);
+							forkables = Arrays.copyOf(forkables, top << 1);
+						}
+						nodes[top] = next;
+						cursors[top] = data.begin(next);
+						ends[top] = data.end(next);
+						weights[top] = w;
+						forkables[top] = canFork && code == ReturnState.FORK_CONTINUE;
+						if (info.nodeSet != null)
+							info.nodeSet.add(next);
+						if (stats != null)
+							stats.expandedNodes++;
 					}
 				}
-				Boolean isRepeated = null;
-				int trimmedHead = lData[lData.length - 1];
-				for (int n = 0; n < lData.length - 1;) {
-					if (lData[n] == WEIGHT_THRESHOLD)
+				if ((++checks & SPLIT_INTERVAL_MASK) == 0) {
+					if (info.control.isTerminated()) {
+						rs = ReturnState.BREAK;
 						break;
-					if (lData[n] > WEIGHT_THRESHOLD) {
-						addOrSet(info.steps, info.depth + 1, unmapper[n + trimmedHead]);
-						if (info.nodeBitSet != null)
-							isRepeated = info.nodeBitSet.get(n + trimmedHead);
-						ReturnState code = info.task.check(info.unmodifiableSteps, info.depth + 1,
-								info.weight + lData[n], info.result, isRepeated);
-						if (code == ReturnState.BREAK)
-							return ReturnState.BREAK;
-						// stop on repeat
-						if ((code == ReturnState.FORK_CONTINUE || code == ReturnState.CONTINUE)
-								&& (isRepeated == null || !isRepeated)) {
-							if (code == ReturnState.FORK_CONTINUE && info.task.getMaxParallelTask() > 1
-									&& info.phaser.getRegisteredParties() < info.task.getMaxParallelTask()) {
-								info.phaser.register();
-								new ForkTask<N, R>(this, info.fork(n + trimmedHead, lData[n])).fork();
-							} else {
-								int orgStartIndex = info.startIndex;
-								info.startIndex = n + trimmedHead;
-								info.depth++;
-								info.weight += lData[n];
-								ReturnState rs = doSearch(info);
-								info.startIndex = orgStartIndex;
-								info.depth--;
-								info.weight -= lData[n];
-								if (rs == ReturnState.BREAK) {
-									return ReturnState.BREAK;
-								}
-							}
+					}
+					// hand off the shallowest unexplored edges, they tend to
+					// be the largest piece of work
+					for (int n = 0; canFork && n <= top; n++) {
+						if (forkables[n] && cursors[n] < ends[n]) {
+							if (info.trySplit(this, nodes[n], baseDepth + n, weights[n], cursors[n], ends[n]))
+								ends[n] = cursors[n];
+							break;
 						}
-						n++;
-					} else {
-						n = WEIGHT_THRESHOLD - lData[n] - trimmedHead;
 					}
 				}
-				return ReturnState.STOP;
-			} finally {
-				while (info.steps.size() > info.depth && !info.steps.isEmpty())
-					info.steps.remove(info.steps.size() - 1);
-				if (toClearBitSet) {
-					info.nodeBitSet.clear(info.startIndex);
+			}
+			if (top >= 0) {// on break
+				for (; top >= 0; top--) {
+					if (nodes[top] != nodeCount && info.nodeSet != null)
+						info.nodeSet.remove(nodes[top]);
 				}
+				info.trimSteps(baseDepth);
 			}
+			info.depth = baseDepth;
+			info.weight = baseWeight;
+			return rs;
 		}
 	}
 
 	class BreadthFirstSearcher extends Searcher<N> {
 		@Override
 		<R> ReturnState doSearch(SearchInfo<N, R> info) {
-			MagicArrayQueue deque = MagicArrayQueue.create(64, nodeCount+info.depth+64);
+			MagicArrayQueue deque = MagicArrayQueue.create(64, info.graph.nodeCount + info.depth + 64);
+			// masks of the nodes to expand, in the same order as them
+			MagicArrayQueue masks = info.task.isMasked() ? MagicArrayQueue.create(64, info.mask) : null;
+			File spillDirectory = frontierSpillDirectory;
+			if (spillDirectory != null) {
+				long spillBytes = frontierSpillBytes;
+				deque.spill(spillDirectory, spillBytes);
+				if (masks != null)
+					masks.spill(spillDirectory, spillBytes);
+			}
+			try {
+				return search(info, deque, masks);
+			} finally {
+				// the chunks are reused by the next search of this thread
+				deque.release();
+				if (masks != null)
+					masks.release();
+			}
+		}
+
+		private <R> ReturnState search(SearchInfo<N, R> info, MagicArrayQueue deque, MagicArrayQueue masks) {
+			Adjacency data = info.graph.data;
+			int nodeCount = info.graph.nodeCount;
+			int rootMark = info.graph.rootMark;
 //			deque.offer((info.depth>0?info.depth:0)+rootMark+1);
 			deque.offer(info.startIndex);
 			deque.offer(rootMark);
+			if (masks != null)
+				masks.offer(info.mask);
 			int firstBranch = 0;
 			int firstBranchTemp = info.depth;
 			int i;
-			int tailMark = -1;
+			long tailMark = -1;
 			int markDepth = 0;
+			SearchStats stats = info.stats;
 			while ((i = deque.poll()) != MagicArrayQueue.EMPTY_VALUE) {
 				if(i == rootMark){
 					if(tailMark != -1){
@@ -287,14 +1119,15 @@ public class GraphSearcher<N> {
 					}
 					if(deque.isEmpty())
 						return ReturnState.STOP;
+					// the depth marks are rootMark+1+depth
+					if (info.depth >= Integer.MAX_VALUE - rootMark - 1)
+						throw new IllegalStateException("The search is too deep: " + info.depth);
 					info.depth++;
 					deque.offer(rootMark);
 					firstBranch = firstBranchTemp;
 					firstBranchTemp = info.depth;
 					if (info.depth >= 2) {
-						int ppIndex = info.stepIndexes.get(info.depth - 2);
-						info.weight += data[ppIndex][info.stepIndexes.get(info.depth - 1)
-								- data[ppIndex][data[ppIndex].length - 1]];
+						info.weight += data.getWeight(info.path[info.depth - 2], info.path[info.depth - 1]);
 					}
 					continue;
 				}else if(i>rootMark){
@@ -313,104 +1146,219 @@ public class GraphSearcher<N> {
 						markDepth = startDepth;
 						deque.offer(startDepth + rootMark+1);
 					}
-					int pIndex = startDepth>=1?info.stepIndexes.get(startDepth - 1):-1;
+					int pIndex = startDepth>=1?info.path[startDepth - 1]:-1;
 					for(int n=startDepth, index;n<info.depth;n++){
 						index = deque.poll();
 						if (pIndex >= 0) {
-							info.weight = info.weight
-									- data[pIndex][info.stepIndexes.get(n) - data[pIndex][data[pIndex].length - 1]]
-									+ data[info.stepIndexes.get(n - 1)][index
-											- data[info.stepIndexes.get(n - 1)][data[info.stepIndexes.get(n - 1)].length
-													- 1]];
-						}
-						pIndex = info.stepIndexes.get(n);
-						if (pIndex != index) {
-							info.stepIndexes.set(n, index);
-							if (n < firstBranchTemp)
-								firstBranchTemp = n;
+							info.weight = info.weight - data.getWeight(pIndex, info.path[n])
+									+ data.getWeight(info.path[n - 1], index);
 						}
+						pIndex = info.path[n];
+						if (pIndex != index && n < firstBranchTemp)
+							firstBranchTemp = n;
 
-						if (info.nodeBitSet != null)
-							info.nodeBitSet.clear(pIndex);
-						info.steps.set(n, unmapper[index]);
+						if (info.nodeSet != null)
+							info.nodeSet.remove(pIndex);
+						info.setStep(n, index);
 						deque.offer(index);
 					}
 					
-					if (info.nodeBitSet != null){
+					if (info.nodeSet != null){
 						for (int l = startDepth; l < info.depth; l++) {
-							info.nodeBitSet.set(info.stepIndexes.get(l));
+							info.nodeSet.add(info.path[l]);
 						}
 					}
 					i = deque.poll();
 				}
-				if (info.phaser.isTerminated())
+				if (info.control.isTerminated())
 					return ReturnState.BREAK;
-				boolean toClearBitSet = false;
-				int[] lData;
+				if (masks != null)
+					info.mask = masks.poll();
+				if (stats != null)
+					stats.expandedNodes++;
+				boolean toClearNodeSet = false;
 				int curWeight = 0;
 				boolean addParent;
 				if (i == nodeCount) {
 					addParent = false;
-					lData = data[i];
 				} else {
 					addParent = true;
-					lData = data[i];
-					info.steps.set(info.depth, unmapper[i]);
-					info.stepIndexes.set(info.depth, i);
+					info.setStep(info.depth, i);
 					if (info.depth > 0) {
-						int preIndex = info.stepIndexes.get(info.depth - 1);
-						curWeight = data[preIndex][i - data[preIndex][data[preIndex].length - 1]];
+						curWeight = data.getWeight(info.path[info.depth - 1], i);
 					}
-					if (info.nodeBitSet != null) {
-						info.nodeBitSet.set(i);
-						toClearBitSet = true;
+					if (info.nodeSet != null) {
+						info.nodeSet.add(i);
+						toClearNodeSet = true;
 					}
 				}
 				Boolean isRepeated = null;
-				int trimmedHead = lData[lData.length - 1];
-				for (int n = 0; n < lData.length - 1;) {
-					if (lData[n] == WEIGHT_THRESHOLD)
-						break;
-					if (lData[n] > WEIGHT_THRESHOLD) {
-						addOrSet(info.steps, info.depth + 1, unmapper[n + trimmedHead]);
-						if (info.stepIndexes.size() <= info.depth + 1)
-							info.stepIndexes.add(n + trimmedHead);
-						else
-							info.stepIndexes.set(info.depth + 1, n + trimmedHead);
-						if (info.nodeBitSet != null)
-							isRepeated = info.nodeBitSet.get(n + trimmedHead);
-						ReturnState code = info.task.check(info.unmodifiableSteps, info.depth + 1,
-								info.weight + curWeight + lData[n], info.result, isRepeated);
-						if (code == ReturnState.BREAK)
-							return ReturnState.BREAK;
-						// stop on repeat
-						if ((code == ReturnState.FORK_CONTINUE || code == ReturnState.CONTINUE)
-								&& (isRepeated == null || !isRepeated)) {
-							if (code == ReturnState.FORK_CONTINUE && info.task.getMaxParallelTask() > 1
-									&& info.phaser.getRegisteredParties() < info.task.getMaxParallelTask()) {
-								info.phaser.register();
-								new ForkTask<N, R>(this, info.fork(n + trimmedHead, curWeight)).fork();
-							} else {
-								if(addParent){
-									if(tailMark == -1)
-										deque.offer(info.depth + rootMark + 1);
-									else
-										tailMark = -1;
-									deque.offer(i);
-									addParent = false;
-								}
-								deque.offer(n + trimmedHead);
+				for (int e = data.begin(i), end = data.end(i), next, w; e < end; e++) {
+					next = data.target(e);
+					w = data.weight(e);
+					info.setStep(info.depth + 1, next);
+					if (info.nodeSet != null)
+						isRepeated = info.nodeSet.contains(next);
+					ReturnState code = info.task.doCheck(info, info.depth + 1, info.weight + curWeight + w,
+							isRepeated);
+					if (stats != null)
+						stats.checked(code, info.depth + 1);
+					if (code == ReturnState.BREAK)
+						return ReturnState.BREAK;
+					// stop on repeat
+					if ((code == ReturnState.FORK_CONTINUE || code == ReturnState.CONTINUE)
+							&& (isRepeated == null || !isRepeated)) {
+						if (code != ReturnState.FORK_CONTINUE || !info.tryFork(this, next, curWeight)) {
+							if(addParent){
+								if(tailMark == -1)
+									deque.offer(info.depth + rootMark + 1);
+								else
+									tailMark = -1;
+								deque.offer(i);
+								addParent = false;
 							}
+							deque.offer(next);
+							if (masks != null)
+								masks.offer(info.childMask);
 						}
-						n++;
-					} else {
-						n = WEIGHT_THRESHOLD - lData[n] - trimmedHead;
 					}
 				}
-				if (toClearBitSet)
-					info.nodeBitSet.clear(i);
+				if (toClearNodeSet)
+					info.nodeSet.remove(i);
+				if (stats != null)
+					stats.queued(deque.size());
 			}
 			return ReturnState.STOP;
 		}
 	}
+
+	/**
+	 * Dijkstra over node indexes, or A* if a heuristic is given, a route
+	 * contains one edge at least, so start itself isn't settled at the
+	 * beginning, its weight will be the shortest cycle through it
+	 */
+	class DijkstraSearcher {
+		/**
+		 * @param graph
+		 * @param start
+		 * @param end
+		 *            stop once end is settled, -1 means settle all the
+		 *            reachable nodes
+		 * @param heuristic
+		 *            null for Dijkstra
+		 * @param dist
+		 *            output, the best known weights, they are the shortest
+		 *            weights of the settled nodes,
+		 *            {@link ShortestPaths#UNREACHABLE} for unreached nodes
+		 * @param prev
+		 *            output, the previous node on the best known route
+		 */
+		void search(GraphSnapshot<N> graph, int start, int end, Heuristic heuristic, int[] dist, int[] prev) {
+			Adjacency data = graph.data;
+			int nodeCount = graph.nodeCount;
+			if (data.hasNegativeWeight)
+				throw new IllegalStateException("Shortest path search can't work with negative weights");
+			Arrays.fill(dist, ShortestPaths.UNREACHABLE);
+			IndexedMinHeap heap = new IndexedMinHeap(nodeCount);
+			int[] estimates = null;
+			if (heuristic != null) {
+				estimates = new int[nodeCount];
+				Arrays.fill(estimates, -1);
+			}
+			for (int u = start, g = 0;;) {
+				long w;
+				for (int e = data.begin(u), last = data.end(u), v; e < last; e++) {
+					v = data.target(e);
+					w = (long) g + data.weight(e);
+					// a node popped before is reopened if it improves, which
+					// only happens with an inconsistent heuristic, a route
+					// heavier than Integer.MAX_VALUE - 1 never improves as
+					// dist is at most UNREACHABLE
+					if (w < dist[v]) {
+						dist[v] = (int) w;
+						prev[v] = u;
+						if (estimates == null) {
+							heap.offer(v, (int) w);
+						} else {
+							if (estimates[v] < 0)
+								estimates[v] = heuristic.estimate(v);
+							heap.offer(v, (int) Math.min(w + estimates[v], Integer.MAX_VALUE - 1));
+						}
+					}
+				}
+				if (heap.isEmpty())
+					return;
+				u = heap.poll();
+				g = dist[u];
+				if (u == end)
+					return;
+			}
+		}
+
+		/**
+		 * bidirectional Dijkstra, expands the side with the smaller heap each
+		 * round, start mustn't be end
+		 * 
+		 * @param graph
+		 *            its reverseData must have been built
+		 * @param start
+		 * @param end
+		 * @param maxWeight
+		 *            ignore the routes heavier than this
+		 * @param dist
+		 *            output, the weights from start
+		 * @param prev
+		 *            output, the previous node on the route from start
+		 * @param reverseDist
+		 *            output, the weights to end
+		 * @param next
+		 *            output, the next node on the route to end
+		 * @return the node where the shortest route meets, or -1 if not found
+		 */
+		int searchBidirectional(GraphSnapshot<N> graph, int start, int end, int maxWeight, int[] dist, int[] prev,
+				int[] reverseDist, int[] next) {
+			Adjacency data = graph.data;
+			Adjacency reverseData = graph.reverseData;
+			int nodeCount = graph.nodeCount;
+			if (data.hasNegativeWeight)
+				throw new IllegalStateException("Shortest path search can't work with negative weights");
+			Arrays.fill(dist, ShortestPaths.UNREACHABLE);
+			Arrays.fill(reverseDist, ShortestPaths.UNREACHABLE);
+			IndexedMinHeap heap = new IndexedMinHeap(nodeCount);
+			IndexedMinHeap reverseHeap = new IndexedMinHeap(nodeCount);
+			dist[start] = 0;
+			heap.offer(start, 0);
+			reverseDist[end] = 0;
+			reverseHeap.offer(end, 0);
+			long best = (long) maxWeight + 1;
+			int meet = -1;
+			while (!heap.isEmpty() && !reverseHeap.isEmpty()) {
+				if ((long) heap.peekKey() + reverseHeap.peekKey() >= best)
+					break;
+				boolean forward = heap.size() <= reverseHeap.size();
+				Adjacency adj = forward ? data : reverseData;
+				int[] d = forward ? dist : reverseDist;
+				int[] link = forward ? prev : next;
+				int[] otherD = forward ? reverseDist : dist;
+				IndexedMinHeap h = forward ? heap : reverseHeap;
+				int u = h.poll();
+				long w;
+				for (int e = adj.begin(u), last = adj.end(u), v; e < last; e++) {
+					v = adj.target(e);
+					w = (long) d[u] + adj.weight(e);
+					// a route heavier than maxWeight is dropped, so w fits in int
+					if (w <= maxWeight && w < d[v]) {
+						d[v] = (int) w;
+						link[v] = u;
+						h.offer(v, (int) w);
+						if (otherD[v] != ShortestPaths.UNREACHABLE && w + otherD[v] < best) {
+							best = w + otherD[v];
+							meet = v;
+						}
+					}
+				}
+			}
+			return meet;
+		}
+	}
 }
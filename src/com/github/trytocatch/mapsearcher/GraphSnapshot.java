@@ -0,0 +1,87 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * one version of the graph data, it never changes after created, a search
+ * takes the latest one when it starts and runs on it until the end, so the
+ * changes committed by {@link GraphEditor} don't affect the searches in
+ * flight<br>
+ * node indexes are never reused, a node keeps its index in all the later
+ * versions
+ * 
+ * @author trytocatch@163.com
+ */
+final class GraphSnapshot<N> {
+	final long version;
+	/**
+	 * node to index, shared by all the versions, it may contain the nodes
+	 * added by later versions, see {@link #indexOf}
+	 */
+	final Map<N, Integer> mapper;
+	/**
+	 * index to node, only [0, nodeCount) belong to this version
+	 */
+	final N[] unmapper;
+	final int nodeCount;
+	/**
+	 * weight data, see {@link Adjacency}<br>
+	 * row nodeCount is dummy info for all start nodes<br>
+	 */
+	final Adjacency data;
+	/**
+	 * data with every edge reversed, for searching from the end node, null
+	 * if it isn't built
+	 */
+	final Adjacency reverseData;
+	final int rootMark;
+
+	GraphSnapshot(long version, Map<N, Integer> mapper, N[] unmapper, int nodeCount, Adjacency data,
+			Adjacency reverseData) {
+		this.version = version;
+		this.mapper = mapper;
+		this.unmapper = unmapper;
+		this.nodeCount = nodeCount;
+		this.data = data;
+		this.reverseData = reverseData;
+		this.rootMark = nodeCount + 2;
+	}
+
+	/**
+	 * @return index of the node, or -1 if it isn't in this version
+	 */
+	int indexOf(N node) {
+		Integer index = node == null ? null : mapper.get(node);
+		return index == null || index >= nodeCount ? -1 : index;
+	}
+
+	int existingIndexOf(N node) {
+		int index = indexOf(node);
+		if (index < 0)
+			throw new IllegalArgumentException("Illegal node name: " + node);
+		return index;
+	}
+
+	N getNode(int index) {
+		if (index < 0 || index >= nodeCount)
+			throw new IndexOutOfBoundsException("Illegal node index: " + index);
+		return unmapper[index];
+	}
+
+	ShortestPath<N> toShortestPath(int start, int end, int[] dist, int[] prev) {
+		if (dist[end] == ShortestPaths.UNREACHABLE)
+			return null;
+		List<N> route = new ArrayList<N>();
+		int n = end;
+		do {
+			route.add(unmapper[n]);
+			n = prev[n];
+		} while (n != start);
+		route.add(unmapper[start]);
+		Collections.reverse(route);
+		return new ShortestPath<N>(dist[end], route);
+	}
+}
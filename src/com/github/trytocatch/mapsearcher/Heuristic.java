@@ -0,0 +1,21 @@
+package com.github.trytocatch.mapsearcher;
+
+/**
+ * estimates the remaining weight for A* search, see
+ * {@link GraphSearcher#shortestPath(Object, Object, Heuristic)}
+ * 
+ * @author trytocatch@163.com
+ */
+public interface Heuristic {
+
+	/**
+	 * a lower bound of the weight in total from the node to the end node, it
+	 * must not overestimate, otherwise the path found may not be the shortest
+	 * one
+	 * 
+	 * @param node
+	 *            index of the node, see {@link GraphSearcher#getNode}
+	 * @return a non-negative value, 0 for the end node
+	 */
+	public int estimate(int node);
+}
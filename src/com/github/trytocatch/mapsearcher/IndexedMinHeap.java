@@ -0,0 +1,115 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.Arrays;
+
+/**
+ * binary min heap over node indexes 0~capacity-1, each node can be in the heap
+ * at most once, its key can be decreased in place
+ *
+ * @author trytocatch@163.com
+ */
+final class IndexedMinHeap {
+	private final int[] heap;
+	/**
+	 * position of the node in heap, -1 if it isn't in the heap
+	 */
+	private final int[] pos;
+	private final int[] keys;
+	private int size;
+
+	IndexedMinHeap(int capacity) {
+		heap = new int[capacity];
+		pos = new int[capacity];
+		keys = new int[capacity];
+		Arrays.fill(pos, -1);
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(int node) {
+		return pos[node] >= 0;
+	}
+
+	int getKey(int node) {
+		return keys[node];
+	}
+
+	/**
+	 * insert the node, or decrease its key if it is already in the heap and
+	 * the new key is smaller
+	 * 
+	 * @return false if nothing changed
+	 */
+	boolean offer(int node, int key) {
+		int p = pos[node];
+		if (p < 0) {
+			p = size++;
+		} else if (key >= keys[node]) {
+			return false;
+		}
+		keys[node] = key;
+		siftUp(p, node);
+		return true;
+	}
+
+	int peekKey() {
+		return keys[heap[0]];
+	}
+
+	/**
+	 * @return the node with the minimum key, the heap must not be empty
+	 */
+	int poll() {
+		int node = heap[0];
+		pos[node] = -1;
+		if (--size > 0)
+			siftDown(0, heap[size]);
+		return node;
+	}
+
+	void clear() {
+		for (int n = 0; n < size; n++)
+			pos[heap[n]] = -1;
+		size = 0;
+	}
+
+	private void siftUp(int p, int node) {
+		int key = keys[node];
+		while (p > 0) {
+			int parent = (p - 1) >>> 1;
+			int e = heap[parent];
+			if (keys[e] <= key)
+				break;
+			heap[p] = e;
+			pos[e] = p;
+			p = parent;
+		}
+		heap[p] = node;
+		pos[node] = p;
+	}
+
+	private void siftDown(int p, int node) {
+		int key = keys[node];
+		int half = size >>> 1;
+		while (p < half) {
+			int child = (p << 1) + 1;
+			int c = heap[child];
+			int right = child + 1;
+			if (right < size && keys[heap[right]] < keys[c])
+				c = heap[child = right];
+			if (key <= keys[c])
+				break;
+			heap[p] = c;
+			pos[c] = p;
+			p = child;
+		}
+		heap[p] = node;
+		pos[node] = p;
+	}
+}
@@ -0,0 +1,58 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.List;
+
+/**
+ * a task which sees the steps as node indexes, it saves the cost of mapping
+ * the steps to nodes<br>
+ * use {@link GraphSearcher#getNodeIndex} and {@link GraphSearcher#getNode} to
+ * map between nodes and indexes on demand
+ * 
+ * @author trytocatch@163.com
+ */
+public abstract class IndexedTask<N, R> extends AbstractTask<N, R> {
+
+		/**
+		 * 
+		 * @param start
+		 *            start node or null
+		 */
+		public IndexedTask(N start) {
+			super(start);
+		}
+
+		/**
+		 * define that how this task works
+		 * 
+		 * @param steps
+		 *            node indexes of current steps, only steps[0]~steps[depth]
+		 *            are meaningful, DO NOT modify this
+		 * @param depth
+		 *            start from 0
+		 * @param node
+		 *            index of current node, equals steps[depth]
+		 * @param weight
+		 *            current weight in total
+		 * @param resultHolder
+		 *            the result holder, you can use this to maintain
+		 *            result/results, add or query or remove
+		 * @param isRepeated
+		 *            if isStopFurtherSearchOnRepeat() is false, it will always
+		 *            be null, otherwise, it won't be null and indicate that
+		 *            whether repeat appears
+		 * @return see {@link Task#check(List, int, int, Object, Boolean)}
+		 */
+		protected abstract ReturnState check(int[] steps, int depth, int node, int weight, R resultHolder,
+				Boolean isRepeated);
+
+		@Override
+		final ReturnState doCheck(SearchInfo<N, ?> info, R resultHolder, int depth, int weight,
+				Boolean isRepeated) {
+			return check(info.path, depth, info.path[depth], weight, resultHolder, isRepeated);
+		}
+
+		@Override
+		final boolean isStepsNeeded() {
+			return false;
+		}
+	}
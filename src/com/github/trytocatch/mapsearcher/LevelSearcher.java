@@ -0,0 +1,302 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.trytocatch.mapsearcher.AbstractTask.ReturnState;
+
+/**
+ * level synchronous breadth first search, see {@link Task#setLevelParallel}<br>
+ * the paths are kept as a tree of levels, level k holds the nodes to expand at
+ * depth baseDepth+k, each with the position of its parent in level k-1, the
+ * weight and the mask of its path<br>
+ * a level is split into ranges which are searched by the workers at the same
+ * time, each worker appends the nodes to expand to its own output, and the
+ * outputs are concatenated in order as the next level, so the levels are the
+ * same as searched by one thread<br>
+ * every worker has its own {@link SearchInfo}, their results are merged when
+ * the search finishes, FORK_CONTINUE works as CONTINUE
+ *
+ * @author trytocatch@163.com
+ */
+class LevelSearcher<N> extends Searcher<N> {
+	/**
+	 * a worker searches this many nodes of a level at least
+	 */
+	static final int MIN_WORKER_NODES = 256;
+
+	@Override
+	<R> ReturnState doSearch(SearchInfo<N, R> info) {
+		if (info.control.isTerminated())
+			return ReturnState.BREAK;
+		return new Search<N, R>(info).run();
+	}
+
+	/**
+	 * the state of one search
+	 */
+	private static final class Search<N, R> {
+		final SearchInfo<N, R> info;
+		final int baseDepth;
+		final List<Level> levels = new ArrayList<Level>();
+		/**
+		 * worker 0 searches with info, the others with the copies of template
+		 */
+		final List<Worker<N, R>> workers = new ArrayList<Worker<N, R>>();
+		/**
+		 * a copy of info before the search, null if the search can't be split
+		 */
+		final SearchInfo<N, R> template;
+		final int maxWorkers;
+		/**
+		 * a worker got BREAK
+		 */
+		volatile boolean broken;
+
+		Search(SearchInfo<N, R> info) {
+			this.info = info;
+			baseDepth = info.depth;
+			ForkJoinPool pool = ForkJoinTask.getPool();
+			if (info.forkTask != null && pool != null && info.task.getMaxParallelTask() > 1) {
+				template = info.forkWorker();
+				maxWorkers = Math.min(info.task.getMaxParallelTask(), pool.getParallelism() << 2);
+			} else {
+				template = null;
+				maxWorkers = 1;
+			}
+			workers.add(new Worker<N, R>(this, info));
+		}
+
+		ReturnState run() {
+			boolean masked = info.task.isMasked();
+			Level level = new Level(1, masked);
+			level.add(info.startIndex, -1, info.weight, info.mask);
+			ReturnState rs = ReturnState.STOP;
+			for (int k = 0;; k++) {
+				levels.add(level);
+				int count = Math.max(1, Math.min(maxWorkers, level.size / MIN_WORKER_NODES));
+				// the other workers count as the tasks of the search
+				while (workers.size() < count && info.control.tryAddTask(info.task.getMaxParallelTask()))
+					workers.add(new Worker<N, R>(this, template.forkWorker()));
+				count = Math.min(count, workers.size());
+				for (int n = 0; n < count; n++) {
+					workers.get(n).prepare(k, (int) ((long) level.size * n / count),
+							(int) ((long) level.size * (n + 1) / count));
+				}
+				if (count == 1)
+					workers.get(0).search();
+				else
+					ForkJoinTask.invokeAll(workers.subList(0, count));
+				if (broken || info.control.isTerminated()) {
+					rs = ReturnState.BREAK;
+					break;
+				}
+				// only the nodes and the parents are needed to rebuild the paths
+				level.weights = null;
+				level.masks = null;
+				long size = 0;
+				for (int n = 0; n < count; n++)
+					size += workers.get(n).output.size;
+				if (size == 0)
+					break;
+				if (size > Adjacency.MAX_SIZE)
+					throw new IllegalStateException("Sorry, level too big");
+				level = new Level((int) size, masked);
+				for (int n = 0; n < count; n++)
+					level.addAll(workers.get(n).output);
+				if (info.stats != null)
+					info.stats.queued(level.size);
+			}
+			for (int n = 1; n < workers.size(); n++)
+				info.control.removeTask();
+			merge();
+			return rs;
+		}
+
+		/**
+		 * merge the results and the statistics of the other workers into info
+		 */
+		private void merge() {
+			SearchStats stats = info.control.stats;
+			for (int n = 1; n < workers.size(); n++) {
+				SearchInfo<N, R> workerInfo = workers.get(n).info;
+				info.control.collect(workerInfo.stats);
+				long begin = stats == null ? 0 : System.nanoTime();
+				ForkResultHandler<R> handler = info.task.getForkResultHandler();
+				if (handler.hasResult(workerInfo.result))
+					info.result = handler.merge(workerInfo.result, info.result);
+				if (stats != null)
+					stats.addMergeNanos(System.nanoTime() - begin);
+			}
+		}
+	}
+
+	/**
+	 * searches a range of a level, it's reused for the following levels
+	 */
+	private static final class Worker<N, R> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final Search<N, R> search;
+		final SearchInfo<N, R> info;
+		/**
+		 * the nodes to expand found by this worker in current level
+		 */
+		final Level output;
+		/**
+		 * chain[l] is the position in level l of the node on current path, -1
+		 * if it isn't set
+		 */
+		private int[] chain = new int[0x40];
+		private int k;
+		private int from;
+		private int to;
+
+		Worker(Search<N, R> search, SearchInfo<N, R> info) {
+			this.search = search;
+			this.info = info;
+			output = new Level(0x40, info.task.isMasked());
+			Arrays.fill(chain, -1);
+		}
+
+		/**
+		 * search [from, to) of level k next time
+		 */
+		void prepare(int k, int from, int to) {
+			this.k = k;
+			this.from = from;
+			this.to = to;
+			output.size = 0;
+			if (k == chain.length) {
+				chain = Arrays.copyOf(chain, k << 1);
+				Arrays.fill(chain, k, chain.length, -1);
+			}
+			reinitialize();
+		}
+
+		@Override
+		protected void compute() {
+			search();
+		}
+
+		void search() {
+			Level level = search.levels.get(k);
+			Adjacency data = info.graph.data;
+			SearchStats stats = info.stats;
+			int depth = search.baseDepth + k + 1;
+			Boolean isRepeated = null;
+			for (int p = from; p < to; p++) {
+				if (search.broken || info.control.isTerminated())
+					return;
+				moveTo(p);
+				int i = level.nodes[p];
+				int weight = level.weights[p];
+				if (level.masks != null)
+					info.mask = level.masks[p];
+				if (stats != null)
+					stats.expandedNodes++;
+				for (int e = data.begin(i), end = data.end(i), next, w; e < end; e++) {
+					next = data.target(e);
+					w = weight + data.weight(e);
+					info.setStep(depth, next);
+					if (info.nodeSet != null)
+						isRepeated = info.nodeSet.contains(next);
+					ReturnState code = info.task.doCheck(info, depth, w, isRepeated);
+					if (stats != null)
+						stats.checked(code, depth);
+					if (code == ReturnState.BREAK) {
+						search.broken = true;
+						return;
+					}
+					// stop on repeat
+					if ((code == ReturnState.FORK_CONTINUE || code == ReturnState.CONTINUE)
+							&& (isRepeated == null || !isRepeated))
+						output.add(next, p, w, info.childMask);
+				}
+			}
+		}
+
+		/**
+		 * make the path end with node p of level k, only the steps after the
+		 * one shared with current path are changed
+		 */
+		private void moveTo(int p) {
+			int nodeCount = info.graph.nodeCount;
+			int l = k;
+			for (int e = p; l >= 0 && chain[l] != e; l--) {
+				// remove all the old nodes first, a node may move to another depth
+				if (chain[l] >= 0 && info.nodeSet != null)
+					info.nodeSet.remove(search.levels.get(l).nodes[chain[l]]);
+				chain[l] = e;
+				e = search.levels.get(l).parents[e];
+			}
+			for (l++; l <= k; l++) {
+				int node = search.levels.get(l).nodes[chain[l]];
+				if (node == nodeCount)
+					continue;// the dummy start node, it isn't on the path
+				info.setStep(search.baseDepth + l, node);
+				if (info.nodeSet != null)
+					info.nodeSet.add(node);
+			}
+		}
+	}
+
+	private static final class Level {
+		int[] nodes;
+		/**
+		 * position of the parent in the previous level
+		 */
+		int[] parents;
+		/**
+		 * weight in total of the path, null once the level is searched
+		 */
+		int[] weights;
+		/**
+		 * null if the task isn't masked or the level is searched
+		 */
+		int[] masks;
+		int size;
+
+		Level(int capacity, boolean masked) {
+			nodes = new int[capacity];
+			parents = new int[capacity];
+			weights = new int[capacity];
+			if (masked)
+				masks = new int[capacity];
+		}
+
+		void add(int node, int parent, int weight, int mask) {
+			if (size == nodes.length) {
+				int capacity = (int) Math.min(Adjacency.MAX_SIZE, (long) size << 1);
+				if (capacity == size)
+					throw new IllegalStateException("Sorry, level too big");
+				nodes = Arrays.copyOf(nodes, capacity);
+				parents = Arrays.copyOf(parents, capacity);
+				weights = Arrays.copyOf(weights, capacity);
+				if (masks != null)
+					masks = Arrays.copyOf(masks, capacity);
+			}
+			nodes[size] = node;
+			parents[size] = parent;
+			weights[size] = weight;
+			if (masks != null)
+				masks[size] = mask;
+			size++;
+		}
+
+		/**
+		 * append the nodes of the other level, it must have enough room
+		 */
+		void addAll(Level other) {
+			System.arraycopy(other.nodes, 0, nodes, size, other.size);
+			System.arraycopy(other.parents, 0, parents, size, other.size);
+			System.arraycopy(other.weights, 0, weights, size, other.size);
+			if (masks != null)
+				System.arraycopy(other.masks, 0, masks, size, other.size);
+			size += other.size;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.nio.IntBuffer;
+
+/**
+ * {@link Adjacency} read from the buffers mapped from a graph file, see
+ * {@link GraphFile}, it's never changed, a commit which only changes weights
+ * keeps it under a {@link DeltaAdjacency}, which copies only the weights to
+ * the heap, the others copy it into an {@link ArrayAdjacency}
+ *
+ * @author trytocatch@163.com
+ */
+final class MappedAdjacency extends Adjacency {
+	/**
+	 * a mapping is limited to 2GB, so the arrays are mapped in segments of
+	 * 1 << SEGMENT_SHIFT ints
+	 */
+	static final int SEGMENT_SHIFT = 28;
+	private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+	private final IntBuffer[] offsets;
+	private final IntBuffer[] targets;
+	private final IntBuffer[] weights;
+
+	MappedAdjacency(int nodeCount, IntBuffer[] offsets, IntBuffer[] targets, IntBuffer[] weights,
+			boolean hasNegativeWeight) {
+		super(nodeCount, hasNegativeWeight);
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+	}
+
+	private static int get(IntBuffer[] segments, int index) {
+		return segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+	}
+
+	@Override
+	int begin(int node) {
+		return get(offsets, node);
+	}
+
+	@Override
+	int end(int node) {
+		return get(offsets, node + 1);
+	}
+
+	@Override
+	int target(int edge) {
+		return get(targets, edge);
+	}
+
+	@Override
+	int weight(int edge) {
+		return get(weights, edge);
+	}
+}
@@ -0,0 +1,132 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * how the nodes are numbered when a graph is built, the nodes whose indexes
+ * are near each other are near in the rows of {@link Adjacency}, so a search
+ * which walks from a node to its targets reads less scattered memory if they
+ * get nearby indexes<br>
+ * it's transparent to the tasks, except that the targets of a node are
+ * searched in the order of their indexes
+ *
+ * @author trytocatch@163.com
+ */
+public enum NodeOrder {
+	/**
+	 * the order the nodes first appear in the edges
+	 */
+	FIRST_SEEN {
+		@Override
+		int[] newIndexes(Adjacency data) {
+			return null;
+		}
+	},
+	/**
+	 * descending by the count of the edges from and to the node, the nodes
+	 * visited most are packed at the beginning
+	 */
+	DEGREE {
+		@Override
+		int[] newIndexes(Adjacency data) {
+			int[] degrees = degrees(data);
+			long[] keys = new long[data.nodeCount];
+			for (int m = 0; m < keys.length; m++)
+				keys[m] = ((long) (Integer.MAX_VALUE - degrees[m]) << 32) | m;
+			Arrays.sort(keys);
+			int[] newIndexes = new int[keys.length];
+			for (int n = 0; n < keys.length; n++)
+				newIndexes[(int) keys[n]] = n;
+			return newIndexes;
+		}
+	},
+	/**
+	 * Cuthill-McKee: breadth first from a node with the fewest edges, the
+	 * targets of a node are numbered one after another, the ones with fewer
+	 * edges first, so they are near their source and each other
+	 */
+	CUTHILL_MCKEE {
+		@Override
+		int[] newIndexes(Adjacency data) {
+			int nodeCount = data.nodeCount;
+			int[] degrees = degrees(data);
+			// the roots for the nodes which aren't reached yet
+			long[] roots = new long[nodeCount];
+			for (int m = 0; m < nodeCount; m++)
+				roots[m] = ((long) degrees[m] << 32) | m;
+			Arrays.sort(roots);
+			int[] newIndexes = new int[nodeCount];
+			Arrays.fill(newIndexes, -1);
+			// the nodes by the new indexes, also the queue
+			int[] order = new int[nodeCount];
+			long[] targets = new long[0x40];
+			int size = 0;
+			for (long root : roots) {
+				if (newIndexes[(int) root] >= 0)
+					continue;
+				newIndexes[(int) root] = size;
+				order[size++] = (int) root;
+				for (int head = size - 1; head < size; head++) {
+					int count = 0;
+					for (int e = data.begin(order[head]), end = data.end(order[head]), v; e < end; e++) {
+						v = data.target(e);
+						if (newIndexes[v] >= 0)
+							continue;
+						if (count == targets.length)
+							targets = Arrays.copyOf(targets, count << 1);
+						targets[count++] = ((long) degrees[v] << 32) | v;
+					}
+					Arrays.sort(targets, 0, count);
+					for (int n = 0; n < count; n++) {
+						newIndexes[(int) targets[n]] = size;
+						order[size++] = (int) targets[n];
+					}
+				}
+			}
+			return newIndexes;
+		}
+	};
+
+	/**
+	 * @return newIndexes[m] is the new index of node m, or null if the order
+	 *         doesn't change
+	 */
+	abstract int[] newIndexes(Adjacency data);
+
+	/**
+	 * renumber the nodes of a newly built graph
+	 *
+	 * @param data
+	 * @param mapper
+	 *            updated to the new indexes
+	 * @param unmapper
+	 *            rearranged by the new indexes
+	 * @return the data with the new indexes
+	 */
+	<N> Adjacency apply(Adjacency data, Map<N, Integer> mapper, N[] unmapper) {
+		int[] newIndexes = newIndexes(data);
+		if (newIndexes == null)
+			return data;
+		N[] nodes = Arrays.copyOf(unmapper, data.nodeCount);
+		for (int m = 0; m < nodes.length; m++) {
+			unmapper[newIndexes[m]] = nodes[m];
+			mapper.put(nodes[m], newIndexes[m]);
+		}
+		return data.renumber(newIndexes);
+	}
+
+	/**
+	 * @return count of the edges from and to each node
+	 */
+	static int[] degrees(Adjacency data) {
+		int[] degrees = new int[data.nodeCount];
+		for (int m = 0; m < degrees.length; m++) {
+			for (int e = data.begin(m), end = data.end(m); e < end; e++)
+				degrees[data.target(e)]++;
+		}
+		for (int m = 0; m < degrees.length; m++)
+			degrees[m] = (int) Math.min(Integer.MAX_VALUE, (long) degrees[m] + data.end(m) - data.begin(m));
+		return degrees;
+	}
+}
@@ -0,0 +1,38 @@
+package com.github.trytocatch.mapsearcher;
+
+/**
+ * define how to create a node from its text in an edge list file, see
+ * {@link EdgeListLoader}
+ * 
+ * @author trytocatch@163.com
+ */
+public interface NodeParser<N> {
+	NodeParser<String> STRING = new NodeParser<String>() {
+		@Override
+		public String parse(String text) {
+			return text;
+		}
+	};
+
+	NodeParser<Integer> INTEGER = new NodeParser<Integer>() {
+		@Override
+		public Integer parse(String text) {
+			return Integer.valueOf(text);
+		}
+	};
+
+	NodeParser<Long> LONG = new NodeParser<Long>() {
+		@Override
+		public Long parse(String text) {
+			return Long.valueOf(text);
+		}
+	};
+
+	/**
+	 * @param text
+	 *            the text of the node, trimmed, it's parsed once for each
+	 *            chunk of the file where it appears
+	 * @return the node, mustn't be null
+	 */
+	public N parse(String text);
+}
@@ -0,0 +1,65 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * define how to write the nodes to a graph file and read them back, see
+ * {@link GraphSearcher#save} and {@link GraphSearcher#open}
+ * 
+ * @author trytocatch@163.com
+ */
+public interface NodeSerializer<N> {
+	NodeSerializer<String> STRING = new NodeSerializer<String>() {
+		@Override
+		public void write(DataOutput out, String node) throws IOException {
+			out.writeUTF(node);
+		}
+
+		@Override
+		public String read(DataInput in) throws IOException {
+			return in.readUTF();
+		}
+	};
+
+	NodeSerializer<Character> CHARACTER = new NodeSerializer<Character>() {
+		@Override
+		public void write(DataOutput out, Character node) throws IOException {
+			out.writeChar(node);
+		}
+
+		@Override
+		public Character read(DataInput in) throws IOException {
+			return in.readChar();
+		}
+	};
+
+	NodeSerializer<Integer> INTEGER = new NodeSerializer<Integer>() {
+		@Override
+		public void write(DataOutput out, Integer node) throws IOException {
+			out.writeInt(node);
+		}
+
+		@Override
+		public Integer read(DataInput in) throws IOException {
+			return in.readInt();
+		}
+	};
+
+	NodeSerializer<Long> LONG = new NodeSerializer<Long>() {
+		@Override
+		public void write(DataOutput out, Long node) throws IOException {
+			out.writeLong(node);
+		}
+
+		@Override
+		public Long read(DataInput in) throws IOException {
+			return in.readLong();
+		}
+	};
+
+	public void write(DataOutput out, N node) throws IOException;
+
+	public N read(DataInput in) throws IOException;
+}
@@ -0,0 +1,203 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * count the paths from start to end by dynamic programming instead of
+ * enumerating them, the nodes on a path may repeat, like a task which doesn't
+ * stop on repeat<br>
+ * layer d holds the count of the paths from each node to end with d edges (or
+ * weight d), the count of node v is the sum of layer d-1 (or layer d-weight)
+ * of the targets of v, so a layer only reads the layers before it, and its
+ * nodes are computed in parallel<br>
+ * only the nodes reachable from start within the bound are computed, the
+ * layers are indexed by the order they are reached, start is the first
+ *
+ * @author trytocatch@163.com
+ */
+class PathCounter {
+	/**
+	 * a layer with fewer nodes than this is computed in the caller thread
+	 */
+	static final int SPLIT_THRESHOLD = 4096;
+
+	private final Adjacency data;
+	private final ForkJoinPool pool;
+	/**
+	 * the reachable nodes, in the order they are reached
+	 */
+	private int[] nodes;
+	private int size;
+	/**
+	 * position of the node in nodes, -1 if it isn't reachable
+	 */
+	private int[] positions;
+	/**
+	 * layer d is layers[d % layers.length], the layers older than the
+	 * heaviest edge are overwritten
+	 */
+	private long[][] layers;
+	private boolean byWeight;
+	/**
+	 * the layer being computed
+	 */
+	private int layer;
+
+	PathCounter(Adjacency data, ForkJoinPool pool) {
+		this.data = data;
+		this.pool = pool;
+	}
+
+	/**
+	 * @param start
+	 * @param end
+	 * @param maxDepth
+	 * @return the counts of the paths with 0~maxDepth edges, the path with no
+	 *         edge is counted if start is end
+	 */
+	long[] countByDepth(int start, int end, int maxDepth) {
+		long[] counts = new long[maxDepth + 1];
+		reachByDepth(start, maxDepth);
+		if (positions[end] < 0)
+			return counts;
+		byWeight = false;
+		layers = new long[2][size];
+		return count(end, counts);
+	}
+
+	/**
+	 * all the weights of the reachable edges must be positive
+	 *
+	 * @param start
+	 * @param end
+	 * @param maxWeight
+	 * @return the counts of the paths with weight 0~maxWeight, the path with
+	 *         no edge is counted if start is end
+	 */
+	long[] countByWeight(int start, int end, int maxWeight) {
+		long[] counts = new long[maxWeight + 1];
+		int heaviest = reachByWeight(start, maxWeight);
+		if (positions[end] < 0)
+			return counts;
+		byWeight = true;
+		layers = new long[Math.min(heaviest, maxWeight) + 1][size];
+		return count(end, counts);
+	}
+
+	private long[] count(int end, long[] counts) {
+		layers[0][positions[end]] = 1;
+		counts[0] = layers[0][0];
+		for (layer = 1; layer < counts.length; layer++) {
+			if (size < SPLIT_THRESHOLD)
+				computeLayer(0, size);
+			else
+				pool.invoke(new LayerTask(0, size));
+			counts[layer] = layers[layer % layers.length][0];
+		}
+		return counts;
+	}
+
+	/**
+	 * @throws ArithmeticException
+	 *             if a count overflows long
+	 */
+	private void computeLayer(int from, int to) {
+		long[] target = layers[layer % layers.length];
+		for (int p = from; p < to; p++) {
+			long count = 0;
+			for (int e = data.begin(nodes[p]), last = data.end(nodes[p]), w, weight; e < last; e++) {
+				w = positions[data.target(e)];
+				weight = byWeight ? data.weight(e) : 1;
+				if (w >= 0 && weight <= layer)
+					count = Math.addExact(count, layers[(layer - weight) % layers.length][w]);
+			}
+			target[p] = count;
+		}
+	}
+
+	/**
+	 * breadth first, reach the nodes within maxDepth edges from start
+	 */
+	private void reachByDepth(int start, int maxDepth) {
+		init(start);
+		for (int depth = 0, from = 0, to = size; depth < maxDepth && from < to; depth++, from = to, to = size) {
+			for (int p = from; p < to; p++) {
+				for (int e = data.begin(nodes[p]), last = data.end(nodes[p]); e < last; e++)
+					add(data.target(e));
+			}
+		}
+	}
+
+	/**
+	 * Dijkstra, reach the nodes within maxWeight from start
+	 *
+	 * @return the heaviest weight of the edges from the reached nodes
+	 */
+	private int reachByWeight(int start, int maxWeight) {
+		init(start);
+		int[] dist = new int[data.nodeCount];
+		Arrays.fill(dist, ShortestPaths.UNREACHABLE);
+		dist[start] = 0;
+		IndexedMinHeap heap = new IndexedMinHeap(data.nodeCount);
+		int heaviest = 0;
+		for (int u = start;;) {
+			for (int e = data.begin(u), last = data.end(u), v, weight; e < last; e++) {
+				v = data.target(e);
+				weight = data.weight(e);
+				if (weight <= 0)
+					throw new IllegalStateException("Counting paths by weight needs positive weights");
+				heaviest = Math.max(heaviest, weight);
+				if ((long) dist[u] + weight <= maxWeight && dist[u] + weight < dist[v]) {
+					dist[v] = dist[u] + weight;
+					heap.offer(v, dist[v]);
+				}
+			}
+			if (heap.isEmpty())
+				return heaviest;
+			add(u = heap.poll());
+		}
+	}
+
+	private void init(int start) {
+		nodes = new int[Math.min(data.nodeCount, 16)];
+		positions = new int[data.nodeCount];
+		Arrays.fill(positions, -1);
+		size = 0;
+		add(start);
+	}
+
+	private void add(int node) {
+		if (positions[node] >= 0)
+			return;
+		if (size == nodes.length)
+			nodes = Arrays.copyOf(nodes, Math.min(data.nodeCount, size << 1));
+		positions[node] = size;
+		nodes[size++] = node;
+	}
+
+	/**
+	 * computes a range of nodes of the current layer, splits it if it's large
+	 */
+	private class LayerTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+
+		LayerTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from < SPLIT_THRESHOLD) {
+				computeLayer(from, to);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new LayerTask(from, mid), new LayerTask(mid, to));
+			}
+		}
+	}
+}
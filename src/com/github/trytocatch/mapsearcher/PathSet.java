@@ -0,0 +1,107 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.Arrays;
+
+/**
+ * the nodes on the path being searched, for the repeat detection<br>
+ * an open addressing hash set of node indexes, its size follows the depth of
+ * the path instead of the node count, so a fork task builds its own one from
+ * the steps it starts from, see {@link SearchInfo#fork}
+ *
+ * @author trytocatch@163.com
+ */
+class PathSet {
+	private static final int FREE = -1;
+
+	private int[] table;
+	private int size;
+	/**
+	 * 32 - log2(table.length), the hash takes the high bits
+	 */
+	private int shift;
+
+	/**
+	 * @param expectedSize
+	 *            the count of nodes it's expected to hold
+	 */
+	PathSet(int expectedSize) {
+		int capacity = 16;
+		while (capacity < 0x40000000 && capacity < expectedSize << 1)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		table = new int[capacity];
+		Arrays.fill(table, FREE);
+		shift = Integer.numberOfLeadingZeros(capacity) + 1;
+	}
+
+	private int slot(int node) {
+		return (node * 0x9E3779B9) >>> shift;
+	}
+
+	boolean contains(int node) {
+		int mask = table.length - 1;
+		for (int p = slot(node), v;; p = (p + 1) & mask) {
+			v = table[p];
+			if (v == node)
+				return true;
+			if (v == FREE)
+				return false;
+		}
+	}
+
+	/**
+	 * nothing changes if it's in the set
+	 */
+	void add(int node) {
+		int mask = table.length - 1;
+		for (int p = slot(node), v;; p = (p + 1) & mask) {
+			v = table[p];
+			if (v == node)
+				return;
+			if (v == FREE) {
+				table[p] = node;
+				break;
+			}
+		}
+		// keep it at most half full
+		if (++size << 1 > table.length)
+			rehash(table.length << 1);
+	}
+
+	/**
+	 * nothing changes if it isn't in the set
+	 */
+	void remove(int node) {
+		int mask = table.length - 1;
+		int gap = slot(node);
+		for (int v;; gap = (gap + 1) & mask) {
+			v = table[gap];
+			if (v == node)
+				break;
+			if (v == FREE)
+				return;
+		}
+		size--;
+		// shift the following nodes back, so no probe sequence is broken
+		for (int q = (gap + 1) & mask, v; (v = table[q]) != FREE; q = (q + 1) & mask) {
+			if (((q - slot(v)) & mask) >= ((q - gap) & mask)) {
+				table[gap] = v;
+				gap = q;
+			}
+		}
+		table[gap] = FREE;
+	}
+
+	private void rehash(int capacity) {
+		int[] old = table;
+		allocate(capacity);
+		size = 0;
+		for (int v : old) {
+			if (v != FREE)
+				add(v);
+		}
+	}
+}
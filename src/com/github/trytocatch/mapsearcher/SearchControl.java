@@ -0,0 +1,101 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * the state shared by the main search and all the fork tasks of one search
+ * 
+ * @author trytocatch@163.com
+ */
+class SearchControl {
+	private static final int RUNNING = 0;
+	private static final int TERMINATED = 1;
+	/**
+	 * stopped by the deadline, the results found so far are kept
+	 */
+	private static final int EXPIRED = 2;
+
+	private volatile int state = RUNNING;
+	/**
+	 * count of the tasks which haven't finished searching, the main one
+	 * included, see {@link AbstractTask#setMaxParallelTask}
+	 */
+	private final AtomicInteger searchingTasks = new AtomicInteger(1);
+
+	/**
+	 * the statistics of the whole search, null if they aren't collected
+	 */
+	final SearchStats stats;
+	private final SearchStatsListener statsListener;
+
+	SearchControl(SearchStats stats, SearchStatsListener statsListener) {
+		this.stats = stats;
+		this.statsListener = statsListener;
+	}
+
+	boolean isTerminated() {
+		return state != RUNNING;
+	}
+
+	/**
+	 * @return whether the search is stopped by the deadline, then the results
+	 *         found so far should still be merged
+	 */
+	boolean isExpired() {
+		return state == EXPIRED;
+	}
+
+	/**
+	 * make all the tasks of this search stop as soon as possible
+	 */
+	void terminate() {
+		state = TERMINATED;
+	}
+
+	/**
+	 * like {@link #terminate()}, but the results found so far are kept
+	 */
+	void expire() {
+		if (state == RUNNING)
+			state = EXPIRED;
+	}
+
+	/**
+	 * count a new task in, unless there are maxTasks already
+	 * 
+	 * @return whether it's counted in
+	 */
+	boolean tryAddTask(int maxTasks) {
+		for (int n;;) {
+			n = searchingTasks.get();
+			if (n >= maxTasks)
+				return false;
+			if (searchingTasks.compareAndSet(n, n + 1))
+				return true;
+		}
+	}
+
+	/**
+	 * a task counted by {@link #tryAddTask} has finished searching
+	 */
+	void removeTask() {
+		searchingTasks.decrementAndGet();
+	}
+
+	/**
+	 * add the statistics of a task which has finished
+	 */
+	void collect(SearchStats taskStats) {
+		if (taskStats != null)
+			stats.add(taskStats);
+	}
+
+	/**
+	 * called once when the search finishes, after all the tasks are
+	 * collected
+	 */
+	void finish(AbstractTask<?, ?> task) {
+		if (statsListener != null)
+			statsListener.searchFinished(task, stats);
+	}
+}
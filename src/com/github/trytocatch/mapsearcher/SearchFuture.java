@@ -0,0 +1,83 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the future of an asynchronous search, cancelling it terminates the search
+ * 
+ * @author trytocatch@163.com
+ */
+class SearchFuture<R> extends CompletableFuture<R> {
+	private final SearchControl control;
+	private volatile ScheduledFuture<?> deadline;
+
+	SearchFuture(SearchControl control) {
+		this.control = control;
+	}
+
+	/**
+	 * expire the search after the timeout
+	 */
+	void setDeadline(long timeout, TimeUnit unit) {
+		deadline = Timer.EXECUTOR.schedule(new Runnable() {
+			@Override
+			public void run() {
+				control.expire();
+			}
+		}, timeout, unit);
+		// it may have completed before the deadline is set
+		if (isDone())
+			cancelDeadline();
+	}
+
+	private void cancelDeadline() {
+		ScheduledFuture<?> d = deadline;
+		if (d != null)
+			d.cancel(false);
+	}
+
+	@Override
+	public boolean complete(R value) {
+		boolean result = super.complete(value);
+		cancelDeadline();
+		return result;
+	}
+
+	@Override
+	public boolean completeExceptionally(Throwable ex) {
+		boolean result = super.completeExceptionally(ex);
+		cancelDeadline();
+		return result;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		control.terminate();
+		boolean result = super.cancel(mayInterruptIfRunning);
+		cancelDeadline();
+		return result;
+	}
+
+	/**
+	 * the single daemon thread which expires the searches, created on first
+	 * use
+	 */
+	private static class Timer {
+		static final ScheduledThreadPoolExecutor EXECUTOR;
+		static {
+			EXECUTOR = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "GraphSearcher-deadline");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			EXECUTOR.setRemoveOnCancelPolicy(true);
+		}
+	}
+}
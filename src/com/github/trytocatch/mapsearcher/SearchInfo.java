@@ -1,71 +1,236 @@
 package com.github.trytocatch.mapsearcher;
 
-import java.util.ArrayList;
-import java.util.BitSet;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Phaser;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinTask;
 
 class SearchInfo<N, R> implements Cloneable {
-		ArrayList<N> steps;
+		/**
+		 * fork only if the current worker has no more than this number of
+		 * queued tasks which haven't been stolen
+		 */
+		private static final int FORK_SURPLUS_THRESHOLD = 2;
+
+		/**
+		 * the steps seen by the task, a view of path, null if the task doesn't
+		 * need List steps, see {@link IndexedTask}
+		 */
+		List<N> steps;
+		/**
+		 * size of steps
+		 */
+		int stepCount;
 		R result;
 		int depth;
 		int weight;
-		Task<N, R> task;
+		AbstractTask<N, R> task;
 		int startIndex;
-		BitSet nodeBitSet;
-		List<N> unmodifiableSteps;
-		ArrayList<Integer> stepIndexes;
-		ConcurrentLinkedQueue<R> resultQueue;
-		Phaser phaser;
+		/**
+		 * the nodes on current path, null if the task doesn't stop on repeat
+		 */
+		PathSet nodeSet;
+		/**
+		 * node indexes of current steps, path[n] is the index of steps[n], it
+		 * grows as a stack, only path[0]~path[depth+1] are alive
+		 */
+		int[] path;
+		/**
+		 * the version of the graph this search runs on
+		 */
+		GraphSnapshot<N> graph;
+		N[] unmapper;
+		SearchControl control;
+		/**
+		 * the task which runs this search
+		 */
+		ForkTask<N, R> forkTask;
+		/**
+		 * if it isn't -1, only the edges [edgeBegin, edgeEnd) of startIndex
+		 * are searched, see {@link #trySplit}
+		 */
+		int edgeBegin = -1;
+		int edgeEnd;
+		/**
+		 * whether the task allows forking the search under startIndex
+		 */
+		boolean rootForkable;
+		/**
+		 * for a masked task, see {@link BatchTask}: mask is the bits of the
+		 * current path being expanded, childMask is the bits of the last
+		 * checked step
+		 */
+		int mask = Integer.MAX_VALUE;
+		int childMask = Integer.MAX_VALUE;
+		/**
+		 * the statistics of this task only, null if they aren't collected,
+		 * see {@link SearchControl#stats}
+		 */
+		SearchStats stats;
 
-		SearchInfo(ArrayList<N> steps, R result, int depth, int weight, Task<N, R> task, int startIndex,
-				BitSet nodeBitSet, ArrayList<Integer> stepIndexes, ConcurrentLinkedQueue<R> resultQueue, Phaser phaser) {
-			this.steps = steps;
+		/**
+		 * @param stepsNeeded
+		 *            false if the task doesn't need List steps, see
+		 *            {@link IndexedTask}
+		 */
+		SearchInfo(boolean stepsNeeded, GraphSnapshot<N> graph, R result, int depth, int weight, AbstractTask<N, R> task,
+				int startIndex, PathSet nodeSet, SearchControl control) {
+			if (stepsNeeded)
+				steps = new StepList();
+			this.graph = graph;
+			this.unmapper = graph.unmapper;
+			this.path = new int[0x40];
 			this.result = result;
 			this.depth = depth;
 			this.weight = weight;
 			this.startIndex = startIndex;
-			this.nodeBitSet = nodeBitSet;
-			this.stepIndexes = stepIndexes;
+			this.nodeSet = nodeSet;
 			this.task = task;
-			this.resultQueue = resultQueue;
-			this.phaser = phaser;
-			unmodifiableSteps = Collections.unmodifiableList(steps);
+			this.control = control;
+		}
+
+		/**
+		 * set steps[depth] to the node, the steps after depth are left as
+		 * they are
+		 */
+		void setStep(int depth, int node) {
+			if (depth >= path.length)
+				path = Arrays.copyOf(path, path.length << 1);
+			path[depth] = node;
+			if (stepCount <= depth)// stepCount < depth won't happen
+				stepCount = depth + 1;
+		}
+
+		/**
+		 * the searchers call this when the task returns FORK_CONTINUE, the
+		 * splitting is decided here: fork while there are idle workers to
+		 * steal the queued tasks and fewer than getMaxParallelTask() tasks
+		 * are searching, otherwise continue in the current task
+		 * 
+		 * @return whether the search on startIndex is forked
+		 */
+		boolean tryFork(Searcher<N> searcher, int startIndex, int curWeight) {
+			if (task.getMaxParallelTask() <= 1 || forkTask == null
+					|| ForkJoinTask.getSurplusQueuedTaskCount() > FORK_SURPLUS_THRESHOLD
+					|| !control.tryAddTask(task.getMaxParallelTask())) {
+				if (stats != null)
+					stats.refusedForks++;
+				return false;
+			}
+			forkTask.addToPendingCount(1);
+			new ForkTask<N, R>(forkTask, searcher, fork(startIndex, curWeight)).fork();
+			if (stats != null)
+				stats.forks++;
+			return true;
+		}
+
+		/**
+		 * hand off the unexplored edges of steps[depth] to a new task if some
+		 * workers are idle, see {@link #tryFork}
+		 * 
+		 * @param searcher
+		 * @param startIndex
+		 *            index of steps[depth]
+		 * @param depth
+		 * @param weight
+		 *            weight in total of steps[0]~steps[depth]
+		 * @param edgeBegin
+		 * @param edgeEnd
+		 *            the unexplored edges are [edgeBegin, edgeEnd)
+		 * @return whether the edges are handed off
+		 */
+		boolean trySplit(Searcher<N> searcher, int startIndex, int depth, int weight, int edgeBegin, int edgeEnd) {
+			if (forkTask == null || ForkJoinTask.getSurplusQueuedTaskCount() > 0
+					|| !control.tryAddTask(task.getMaxParallelTask()))
+				return false;
+			SearchInfo<N, R> newObj = copy(startIndex, depth, weight);
+			newObj.edgeBegin = edgeBegin;
+			newObj.edgeEnd = edgeEnd;
+			forkTask.addToPendingCount(1);
+			new ForkTask<N, R>(forkTask, searcher, newObj).fork();
+			if (stats != null)
+				stats.forks++;
+			return true;
 		}
 
-		@SuppressWarnings("unchecked")
 		SearchInfo<N, R> fork(int startIndex, int curWeight) {
+			return copy(startIndex, depth + 1, weight + curWeight);
+		}
+
+		/**
+		 * copy for a worker of {@link LevelSearcher}, it searches the same
+		 * paths as this one with a new result holder
+		 */
+		SearchInfo<N, R> forkWorker() {
+			childMask = mask;
+			return copy(startIndex, depth, weight);
+		}
+
+		/**
+		 * copy for a new task which starts from steps[newDepth], it only pays
+		 * for path[0]~path[newDepth], the steps are a view of path and the
+		 * nodes on the path are rebuilt from it, so the cost doesn't grow with
+		 * the node count
+		 */
+		@SuppressWarnings("unchecked")
+		private SearchInfo<N, R> copy(int startIndex, int newDepth, int newWeight) {
 			SearchInfo<N, R> newObj;
 			try {
 				newObj = (SearchInfo<N, R>) super.clone();
-				newObj.startIndex = startIndex;
-				newObj.steps = (ArrayList<N>) steps.clone();
-				newObj.unmodifiableSteps = Collections.unmodifiableList(newObj.steps);
-				if (nodeBitSet != null)
-					newObj.nodeBitSet = (BitSet) nodeBitSet.clone();
-				if (stepIndexes != null)
-					newObj.stepIndexes = (ArrayList<Integer>) stepIndexes.clone();
-				newObj.depth++;
-				newObj.weight += curWeight;
-				newObj.result = task.getForkResultHandler().fork(result);
-				return newObj;
 			} catch (CloneNotSupportedException e) {
 				return null;// won't happen
 			}
+			newObj.startIndex = startIndex;
+			newObj.depth = newDepth;
+			newObj.weight = newWeight;
+			newObj.edgeBegin = -1;
+			newObj.rootForkable = true;
+			newObj.forkTask = null;
+			// only the live prefix, path[0]~path[newDepth], is needed
+			newObj.path = new int[Math.max(newDepth + 1 + ((newDepth + 1) >>> 1), 0x40)];
+			System.arraycopy(path, 0, newObj.path, 0, newDepth + 1);
+			newObj.stepCount = Math.min(stepCount, newDepth + 1);
+			if (steps != null)
+				newObj.steps = newObj.new StepList();
+			if (nodeSet != null) {
+				// the nodes of this one are on the current path, the copy
+				// keeps the ones on path[0]~path[newDepth]
+				newObj.nodeSet = new PathSet(newDepth + 1);
+				for (int n = 0; n <= newDepth; n++) {
+					if (nodeSet.contains(path[n]))
+						newObj.nodeSet.add(path[n]);
+				}
+			}
+			newObj.mask = childMask;
+			newObj.result = task.forkResult(this);
+			if (stats != null)
+				newObj.stats = new SearchStats();
+			return newObj;
 		}
 
-		void mergeResult() {
-//			for (R r, newResult = result;;) {
-//				r = joinResult.get();
-//				if (r == null) {
-//					if (joinResult.compareAndSet(null, newResult))
-//						break;
-//				} else if (joinResult.compareAndSet(r, null)) {
-//					newResult = task.getForkResultHandler().merge(r, newResult);
-//				}
-//			}
-			resultQueue.add(result);
+		/**
+		 * remove the steps from steps[size]
+		 */
+		void trimSteps(int size) {
+			if (stepCount > size)
+				stepCount = Math.max(size, 0);
+		}
+
+		/**
+		 * steps[n] is the node of path[n], nothing is copied
+		 */
+		private class StepList extends AbstractList<N> implements RandomAccess {
+			@Override
+			public N get(int index) {
+				if (index < 0 || index >= stepCount)
+					throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + stepCount);
+				return unmapper[path[index]];
+			}
+
+			@Override
+			public int size() {
+				return stepCount;
+			}
 		}
 	}
\ No newline at end of file
@@ -0,0 +1,152 @@
+package com.github.trytocatch.mapsearcher;
+
+import com.github.trytocatch.mapsearcher.AbstractTask.ReturnState;
+
+/**
+ * what a search did, see
+ * {@link GraphSearcher#search(AbstractTask, java.util.concurrent.ForkJoinPool, SearchStats)}
+ * and {@link GraphSearcher#setStatsListener}<br>
+ * every task of the search counts into its own SearchStats without any
+ * synchronization, it's added to the one of the search when the task
+ * finishes
+ * 
+ * @author trytocatch@163.com
+ */
+public class SearchStats {
+	long expandedNodes;
+	/**
+	 * count of the checks by the ReturnState returned
+	 */
+	final long[] checks = new long[ReturnState.values().length];
+	long forks;
+	long refusedForks;
+	long tasks;
+	long peakQueueSize;
+	int maxDepth;
+	long mergeNanos;
+
+	/**
+	 * count a call of the task's check
+	 */
+	void checked(ReturnState code, int depth) {
+		checks[code.ordinal()]++;
+		if (depth > maxDepth)
+			maxDepth = depth;
+	}
+
+	void queued(long size) {
+		if (size > peakQueueSize)
+			peakQueueSize = size;
+	}
+
+	synchronized void add(SearchStats stats) {
+		expandedNodes += stats.expandedNodes;
+		for (int n = 0; n < checks.length; n++)
+			checks[n] += stats.checks[n];
+		forks += stats.forks;
+		refusedForks += stats.refusedForks;
+		tasks++;
+		peakQueueSize = Math.max(peakQueueSize, stats.peakQueueSize);
+		maxDepth = Math.max(maxDepth, stats.maxDepth);
+	}
+
+	synchronized void addMergeNanos(long nanos) {
+		mergeNanos += nanos;
+	}
+
+	/**
+	 * @return count of the nodes whose edges are searched, a node whose edges
+	 *         are split between tasks counts once in each of them
+	 */
+	public synchronized long getExpandedNodes() {
+		return expandedNodes;
+	}
+
+	public synchronized long getCheckCount() {
+		long count = 0;
+		for (long n : checks)
+			count += n;
+		return count;
+	}
+
+	/**
+	 * @return count of the checks returned CONTINUE
+	 */
+	public synchronized long getContinueCount() {
+		return checks[ReturnState.CONTINUE.ordinal()];
+	}
+
+	/**
+	 * @return count of the checks returned FORK_CONTINUE
+	 */
+	public synchronized long getForkContinueCount() {
+		return checks[ReturnState.FORK_CONTINUE.ordinal()];
+	}
+
+	/**
+	 * @return count of the checks returned STOP
+	 */
+	public synchronized long getStopCount() {
+		return checks[ReturnState.STOP.ordinal()];
+	}
+
+	/**
+	 * @return count of the checks returned BREAK
+	 */
+	public synchronized long getBreakCount() {
+		return checks[ReturnState.BREAK.ordinal()];
+	}
+
+	/**
+	 * @return count of the tasks forked, including the ones split from the
+	 *         depth first search
+	 */
+	public synchronized long getForks() {
+		return forks;
+	}
+
+	/**
+	 * @return count of FORK_CONTINUE which didn't fork, because of
+	 *         {@link Task#getMaxParallelTask()} or the workers were busy
+	 */
+	public synchronized long getRefusedForks() {
+		return refusedForks;
+	}
+
+	/**
+	 * @return count of the tasks which ran the search, including the main one
+	 */
+	public synchronized long getTasks() {
+		return tasks;
+	}
+
+	/**
+	 * @return the peak size of the queue of the breadth first search, in
+	 *         array elements, it's the peak of one task if the search is
+	 *         forked
+	 */
+	public synchronized long getPeakQueueSize() {
+		return peakQueueSize;
+	}
+
+	public synchronized int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @return time spent in {@link ForkResultHandler#merge} to merge the
+	 *         results of the tasks
+	 */
+	public synchronized long getMergeNanos() {
+		return mergeNanos;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SearchStats [expandedNodes=" + expandedNodes + ", checks=" + getCheckCount() + ", continue="
+				+ getContinueCount() + ", forkContinue=" + getForkContinueCount() + ", stop=" + getStopCount()
+				+ ", break=" + getBreakCount() + ", forks=" + forks + ", refusedForks=" + refusedForks + ", tasks="
+				+ tasks + ", peakQueueSize=" + peakQueueSize + ", maxDepth=" + maxDepth + ", mergeNanos="
+				+ mergeNanos + "]";
+	}
+}
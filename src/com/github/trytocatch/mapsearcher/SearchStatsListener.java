@@ -0,0 +1,21 @@
+package com.github.trytocatch.mapsearcher;
+
+/**
+ * receives the statistics of every search, see
+ * {@link GraphSearcher#setStatsListener}
+ * 
+ * @author trytocatch@163.com
+ */
+public interface SearchStatsListener {
+	/**
+	 * called in the thread which finishes the search, before the result is
+	 * returned<br>
+	 * the breadth first tasks searched together by
+	 * {@link GraphSearcher#searchAll} are reported once, with the task which
+	 * holds them
+	 * 
+	 * @param task
+	 * @param stats
+	 */
+	public void searchFinished(AbstractTask<?, ?> task, SearchStats stats);
+}
@@ -1,6 +1,6 @@
 package com.github.trytocatch.mapsearcher;
 
-import com.github.trytocatch.mapsearcher.Task.ReturnState;
+import com.github.trytocatch.mapsearcher.AbstractTask.ReturnState;
 
 abstract class Searcher<N> {
 	abstract <R> ReturnState doSearch(SearchInfo<N, R> info);
@@ -0,0 +1,85 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * a lock-free bound which only goes down, it can be shared by the main search
+ * and all the fork tasks of one search, so that a branch can be pruned by the
+ * results found in other branches<br>
+ * put it in the result holder and pass the same instance to the new holder in
+ * {@link ForkResultHandler#fork}, or use it as the result holder directly with
+ * {@link #getForkResultHandler()}
+ * 
+ * @author trytocatch@163.com
+ */
+public class SharedBound {
+	private static final ForkResultHandler<SharedBound> FORK_RESULT_HANDLER = new ForkResultHandler<SharedBound>() {
+		@Override
+		public SharedBound fork(SharedBound old) {
+			return old;
+		}
+
+		@Override
+		public SharedBound merge(SharedBound result1, SharedBound result2) {
+			return result1;
+		}
+
+		@Override
+		public boolean hasResult(SharedBound result) {
+			return false;// all the tasks share one instance, nothing to merge
+		}
+	};
+
+	private final AtomicInteger bound;
+
+	/**
+	 * create an unbounded one, its value is Integer.MAX_VALUE
+	 */
+	public SharedBound() {
+		this(Integer.MAX_VALUE);
+	}
+
+	public SharedBound(int initialBound) {
+		bound = new AtomicInteger(initialBound);
+	}
+
+	public int get() {
+		return bound.get();
+	}
+
+	/**
+	 * @return whether the bound has been tightened, i.e. the value is less
+	 *         than Integer.MAX_VALUE
+	 */
+	public boolean isBounded() {
+		return bound.get() != Integer.MAX_VALUE;
+	}
+
+	/**
+	 * lower the bound to value if value is less than it
+	 * 
+	 * @param value
+	 * @return true if the bound is lowered by this call
+	 */
+	public boolean tighten(int value) {
+		for (int current;;) {
+			current = bound.get();
+			if (value >= current)
+				return false;
+			if (bound.compareAndSet(current, value))
+				return true;
+		}
+	}
+
+	/**
+	 * @return a handler which shares the instance with all the fork tasks
+	 */
+	public static ForkResultHandler<SharedBound> getForkResultHandler() {
+		return FORK_RESULT_HANDLER;
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(bound.get());
+	}
+}
@@ -0,0 +1,35 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * a route and its weight in total
+ * 
+ * @author trytocatch@163.com
+ */
+public class ShortestPath<N> {
+	private final int weight;
+	private final List<N> route;
+
+	ShortestPath(int weight, List<N> route) {
+		this.weight = weight;
+		this.route = Collections.unmodifiableList(route);
+	}
+
+	public int getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return the nodes from start to end, both included
+	 */
+	public List<N> getRoute() {
+		return route;
+	}
+
+	@Override
+	public String toString() {
+		return weight + " " + route;
+	}
+}
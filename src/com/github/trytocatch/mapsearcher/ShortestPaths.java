@@ -0,0 +1,67 @@
+package com.github.trytocatch.mapsearcher;
+
+import java.util.List;
+
+/**
+ * shortest paths from one start node to every node, see
+ * {@link GraphSearcher#shortestPaths}
+ * 
+ * @author trytocatch@163.com
+ */
+public class ShortestPaths<N> {
+	static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private final GraphSnapshot<N> graph;
+	private final int start;
+	private final int[] dist;
+	private final int[] prev;
+
+	ShortestPaths(GraphSnapshot<N> graph, int start, int[] dist, int[] prev) {
+		this.graph = graph;
+		this.start = start;
+		this.dist = dist;
+		this.prev = prev;
+	}
+
+	public N getStart() {
+		return graph.getNode(start);
+	}
+
+	public boolean isReachable(N end) {
+		return getWeight(end) != -1;
+	}
+
+	/**
+	 * @param end
+	 * @return the shortest weight from start to end, or -1 if end is
+	 *         unreachable
+	 */
+	public int getWeight(N end) {
+		int index = graph.indexOf(end);
+		if (index < 0)
+			throw new IllegalArgumentException("Illegal node name: " + end);
+		return dist[index] == UNREACHABLE ? -1 : dist[index];
+	}
+
+	/**
+	 * @param end
+	 * @return the shortest route from start to end, or null if end is
+	 *         unreachable
+	 */
+	public List<N> getRoute(N end) {
+		ShortestPath<N> path = getShortestPath(end);
+		return path == null ? null : path.getRoute();
+	}
+
+	/**
+	 * @param end
+	 * @return the shortest path from start to end, or null if end is
+	 *         unreachable
+	 */
+	public ShortestPath<N> getShortestPath(N end) {
+		int index = graph.indexOf(end);
+		if (index < 0)
+			throw new IllegalArgumentException("Illegal node name: " + end);
+		return graph.toShortestPath(start, index, dist, prev);
+	}
+}
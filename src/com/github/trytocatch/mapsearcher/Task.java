@@ -2,34 +2,7 @@ package com.github.trytocatch.mapsearcher;
 
 import java.util.List;
 
-public abstract class Task<N, R> {
-		protected enum ReturnState {
-			/**
-			 * means continue further search on this path
-			 */
-			CONTINUE,
-			/**
-			 * means fork(no guarantee) and continue further search on this path<br>
-			 * you should call {@link #setMaxParallelTask} and override {@link #getForkResultHandler}
-			 */
-			FORK_CONTINUE,
-			/**
-			 * means stop further search on this path
-			 */
-			STOP,
-			/**
-			 * means all search works have done
-			 */
-			BREAK
-		}
-
-		private N start;
-
-		private boolean isDepthFirst;
-
-		private boolean stopFurtherSearchOnRepeat;
-		
-		private int maxParallelTask = 1000;
+public abstract class Task<N, R> extends AbstractTask<N, R> {
 
 		/**
 		 * 
@@ -37,11 +10,7 @@ public abstract class Task<N, R> {
 		 *            start node or null
 		 */
 		public Task(N start) {
-			this.start = start;
-		}
-
-		public N getStart() {
-			return start;
+			super(start);
 		}
 
 		/**
@@ -66,40 +35,8 @@ public abstract class Task<N, R> {
 		 */
 		protected abstract ReturnState check(List<N> steps, int depth, int weight, R resultHolder, Boolean isRepeated);
 
-		public abstract R createResultHolder();
-
-		public boolean isDepthFirst() {
-			return isDepthFirst;
-		}
-
-		public void setDepthFirst(boolean isDepthFirst) {
-			this.isDepthFirst = isDepthFirst;
-		}
-
-		public boolean isStopFurtherSearchOnRepeat() {
-			return stopFurtherSearchOnRepeat;
-		}
-
-		/**
-		 * turn on this will make the argument 'Boolean isRepeated' of method
-		 * check meaningful, it won't be null and it will stop further search on
-		 * current path while repeat appears
-		 * 
-		 * @param stopFurtherSearchOnRepeat
-		 */
-		public void setStopFurtherSearchOnRepeat(boolean stopFurtherSearchOnRepeat) {
-			this.stopFurtherSearchOnRepeat = stopFurtherSearchOnRepeat;
-		}
-
-		public int getMaxParallelTask() {
-			return maxParallelTask;
-		}
-
-		public void setMaxParallelTask(int maxParallelTask) {
-			this.maxParallelTask = maxParallelTask;
-		}
-		
-		public ForkResultHandler<R> getForkResultHandler(){
-			throw new UnsupportedOperationException();
+		@Override
+		ReturnState doCheck(SearchInfo<N, ?> info, R resultHolder, int depth, int weight, Boolean isRepeated) {
+			return check(info.steps, depth, weight, resultHolder, isRepeated);
 		}
 	}
\ No newline at end of file
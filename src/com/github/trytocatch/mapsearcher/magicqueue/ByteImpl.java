@@ -1,17 +1,43 @@
 package com.github.trytocatch.mapsearcher.magicqueue;
 
+import java.nio.ByteBuffer;
+
 class ByteImpl extends MagicArrayQueue{
 	static final int ONE_ELEMENTS = 0xFF-3;
-	private byte[] elements;
+	private static final ThreadLocal<ChunkPool> POOL = new ThreadLocal<ChunkPool>() {
+		@Override
+		protected ChunkPool initialValue() {
+			return new ChunkPool();
+		}
+	};
 	
 	ByteImpl(int numElements) {
-		super(ONE_ELEMENTS);
-		elements = new byte[allocateElements(numElements)];
+		super(ONE_ELEMENTS, numElements);
 	}
 
 	@Override
-	int getArraySize() {
-		return elements.length;
+	Object allocateChunk() {
+		return new byte[CHUNK_SIZE];
+	}
+	
+	@Override
+	ChunkPool getPool() {
+		return POOL.get();
+	}
+	
+	@Override
+	int getElementBytes() {
+		return 1;
+	}
+	
+	@Override
+	void write(Object chunk, ByteBuffer buffer) {
+		buffer.put((byte[]) chunk);
+	}
+	
+	@Override
+	void read(ByteBuffer buffer, Object chunk) {
+		buffer.get((byte[]) chunk);
 	}
 	
 	public boolean offer(int i) {
@@ -50,14 +76,13 @@ class ByteImpl extends MagicArrayQueue{
 	}
 	
 	private void offerByte(int b){
-		elements[tail] = (byte)b;
-		if ((tail = (tail + 1) & (elements.length - 1)) == head)
-			elements = doubleCapacity(elements);
+		((byte[]) tailChunk)[(int) tail & CHUNK_MASK] = (byte)b;
+		advanceTail();
 	}
 
 	@Override
-	int getElement(int index) {
-		return elements[index] & 0xFF;
+	int getElement(long position) {
+		return ((byte[]) chunkOf(position))[(int) position & CHUNK_MASK] & 0xFF;
 	}
 
 }
\ No newline at end of file
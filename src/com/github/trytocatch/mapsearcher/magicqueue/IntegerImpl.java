@@ -1,24 +1,49 @@
 package com.github.trytocatch.mapsearcher.magicqueue;
 
+import java.nio.ByteBuffer;
+
 class IntegerImpl extends MagicArrayQueue{
-	private int[] elements;
+	private static final ThreadLocal<ChunkPool> POOL = new ThreadLocal<ChunkPool>() {
+		@Override
+		protected ChunkPool initialValue() {
+			return new ChunkPool();
+		}
+	};
 	
 	IntegerImpl(int numElements) {
-		super(Integer.MAX_VALUE);
-		elements = new int[allocateElements(numElements)];
+		super(Integer.MAX_VALUE, numElements);
+	}
+	
+	@Override
+	Object allocateChunk() {
+		return new int[CHUNK_SIZE];
+	}
+	
+	@Override
+	ChunkPool getPool() {
+		return POOL.get();
+	}
+	
+	@Override
+	int getElementBytes() {
+		return 4;
+	}
+	
+	@Override
+	void write(Object chunk, ByteBuffer buffer) {
+		buffer.asIntBuffer().put((int[]) chunk);
 	}
 	
 	@Override
-	int getArraySize() {
-		return elements.length;
+	void read(ByteBuffer buffer, Object chunk) {
+		buffer.asIntBuffer().get((int[]) chunk);
 	}
 	
 	public boolean offer(int i) {
 		if(i < 0)
 			throw new IllegalArgumentException("Element to offer must be positive: " + i);
-		elements[tail] = i;
-		if ((tail = (tail + 1) & (elements.length - 1)) == head)
-			elements = doubleCapacity(elements);
+		((int[]) tailChunk)[(int) tail & CHUNK_MASK] = i;
+		advanceTail();
 		return true;
 	}
 	
@@ -29,13 +54,13 @@ class IntegerImpl extends MagicArrayQueue{
 	}
 	
 	@Override
-	int getElement(int index) {
-		return elements[index];
+	int getElement(long position) {
+		return ((int[]) chunkOf(position))[(int) position & CHUNK_MASK];
 	}
 	
 	@Override
-	public void moveTail(int tailStart, int steps) {
+	public void moveTail(long tailStart, int steps) {
 		tail = tailStart + (steps>0?steps:0);
-		tail &= elements.length - 1;
+		tailChunk = chunkOf(tail);
 	}
-}
\ No newline at end of file
+}
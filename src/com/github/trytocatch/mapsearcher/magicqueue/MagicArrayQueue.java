@@ -1,77 +1,180 @@
 package com.github.trytocatch.mapsearcher.magicqueue;
 
-import java.lang.reflect.Array;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.Deque;
 
+/**
+ * the elements are kept in fixed-size chunks instead of one ring array, so
+ * growing never copies the elements, it only adds a chunk, and a position got
+ * by {@link #getTail()} stays valid however the queue grows<br>
+ * a chunk left by the head is kept in its slot and reused when the tail comes
+ * round to it, {@link #release()} gives the chunks to a pool of the current
+ * thread for the next queue<br>
+ * with {@link #spill}, the chunks far from the tail are written to a temp
+ * file and read back when the head reaches them, so only a bounded part of
+ * the queue is kept in memory
+ */
 public abstract class MagicArrayQueue {
-	
+
 	public static final int EMPTY_VALUE = Integer.MIN_VALUE;
 
+	static final int CHUNK_SHIFT = 10;
+	static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	/**
+	 * max count of the chunks kept by the pool of a thread for each
+	 * implementation
+	 */
+	static final int MAX_POOLED_CHUNKS = 16;
 	/**
-	 * The index of the element at the head of the deque (which is the element
-	 * that would be removed by remove() or pop()); or an arbitrary number equal
-	 * to tail if the deque is empty.
+	 * while spilling, the chunks within this distance from the chunk of tail
+	 * are kept in memory, moveTail rarely goes back further
 	 */
-	protected int head;
+	static final int HOT_CHUNKS = 2;
 
 	/**
-	 * The index at which the next element would be added to the tail of the
+	 * The position of the element at the head of the deque (which is the
+	 * element that would be removed by remove() or pop()); or the same as
+	 * tail if the deque is empty. The positions only increase, they are never
+	 * reused.
+	 */
+	protected long head;
+
+	/**
+	 * The position at which the next element would be added to the tail of the
 	 * deque (via addLast(E), add(E), or push(E)).
 	 */
-	protected int tail;
-	
+	protected long tail;
+
 	protected final int threshold;
-	
-	// ****** Array allocation and resizing utilities ******
 
 	/**
-	 * Allocates empty array to hold the given number of elements.
-	 *
+	 * chunks[(position >>> CHUNK_SHIFT) & (chunks.length - 1)] holds the
+	 * element, the slots cover the chunks from the one of head, the chunk of
+	 * tail always exists
+	 */
+	private Object[] chunks;
+
+	/**
+	 * the chunk of tail, to write without looking it up
+	 */
+	protected Object tailChunk;
+
+	/**
+	 * null if the queue doesn't spill
+	 */
+	private Spill spill;
+
+	/**
+	 * @param threshold
 	 * @param numElements
 	 *            the number of elements to hold
 	 */
-	protected final int allocateElements(int numElements) {
-		int initialCapacity = 8;
-		// Find the best power of two to hold elements.
-		// Tests "<=" because arrays aren't kept full.
-		if (numElements >= initialCapacity) {
-			initialCapacity = numElements;
-			initialCapacity |= (initialCapacity >>> 1);
-			initialCapacity |= (initialCapacity >>> 2);
-			initialCapacity |= (initialCapacity >>> 4);
-			initialCapacity |= (initialCapacity >>> 8);
-			initialCapacity |= (initialCapacity >>> 16);
-			initialCapacity++;
-
-			if (initialCapacity < 0) // Too many elements, must back off
-				initialCapacity >>>= 1;// Good luck allocating 2 ^ 30 elements
+	protected MagicArrayQueue(int threshold, int numElements){
+		this.threshold = threshold;
+		int slots = 2;
+		while (slots < 0x40000000 && (long) slots << CHUNK_SHIFT < numElements)
+			slots <<= 1;
+		chunks = new Object[slots];
+		chunks[0] = tailChunk = newChunk();
+	}
+
+	/**
+	 * @return a chunk from the pool of current thread, or a new one
+	 */
+	private Object newChunk() {
+		ChunkPool pool = getPool();
+		if (pool.size > 0) {
+			Object chunk = pool.chunks[--pool.size];
+			pool.chunks[pool.size] = null;
+			return chunk;
 		}
-		return initialCapacity;
+		return allocateChunk();
 	}
-	
-	protected MagicArrayQueue(int threshold){
-		this.threshold = threshold;
+
+	/**
+	 * move tail to the next position, and get the chunk ready if it enters
+	 * a new one
+	 */
+	protected final void advanceTail() {
+		if (((int) ++tail & CHUNK_MASK) != 0)
+			return;
+		long chunkIndex = tail >>> CHUNK_SHIFT;
+		if (chunkIndex - (head >>> CHUNK_SHIFT) >= chunks.length)
+			growSlots();
+		int slot = (int) chunkIndex & (chunks.length - 1);
+		if (chunks[slot] instanceof SpilledChunk) {
+			// left by moveTail, its elements are dropped
+			chunks[slot] = null;
+			spill.dropped();
+		}
+		if (chunks[slot] == null)
+			chunks[slot] = newChunk();
+		tailChunk = chunks[slot];
+		if (spill != null && chunkIndex - (head >>> CHUNK_SHIFT) >= spill.maxMemoryChunks)
+			spillChunk(chunkIndex - HOT_CHUNKS);
 	}
 
 	/**
-	 * Doubles the capacity of this deque. Call only when full, i.e., when head
-	 * and tail have wrapped around to become equal.
+	 * write the chunk to the spill file, unless it's the chunk of head or
+	 * it's spilled
 	 */
-	protected final <A> A doubleCapacity(A array) {
-		assert head == tail;
-		int p = head;
-		int n = Array.getLength(array);
-		int r = n - p; // number of elements to the right of p
-		int newCapacity = n << 1;
-		if (newCapacity < 0)
+	private void spillChunk(long chunkIndex) {
+		int slot = (int) chunkIndex & (chunks.length - 1);
+		if (chunkIndex <= head >>> CHUNK_SHIFT || chunks[slot] == null || chunks[slot] instanceof SpilledChunk)
+			return;
+		ByteBuffer buffer = spill.buffer();
+		write(chunks[slot], buffer);
+		buffer.clear();
+		recycle(chunks[slot]);
+		chunks[slot] = spill.write(buffer);
+	}
+
+	/**
+	 * read the spilled chunk back
+	 */
+	private Object load(long chunkIndex) {
+		int slot = (int) chunkIndex & (chunks.length - 1);
+		ByteBuffer buffer = spill.buffer();
+		spill.read((SpilledChunk) chunks[slot], buffer);
+		Object chunk = newChunk();
+		read(buffer, chunk);
+		return chunks[slot] = chunk;
+	}
+
+	private void recycle(Object chunk) {
+		ChunkPool pool = getPool();
+		if (pool.size < MAX_POOLED_CHUNKS)
+			pool.chunks[pool.size++] = chunk;
+	}
+
+	/**
+	 * double the slots, only the references of the chunks are copied
+	 */
+	private void growSlots() {
+		int length = chunks.length;
+		if (length == 0x40000000)
 			throw new IllegalStateException("Sorry, deque too big");
-		@SuppressWarnings("unchecked")
-		A newArray = (A)Array.newInstance(array.getClass().getComponentType(), newCapacity);
-		System.arraycopy(array, p, newArray, 0, r);
-		System.arraycopy(array, 0, newArray, r, p);
-		head = 0;
-		tail = n;
-		return newArray;
+		Object[] newChunks = new Object[length << 1];
+		for (long n = head >>> CHUNK_SHIFT, end = n + length; n < end; n++)
+			newChunks[(int) n & (newChunks.length - 1)] = chunks[(int) n & (length - 1)];
+		chunks = newChunks;
+	}
+
+	/**
+	 * @return the chunk which holds the position, it must be in [head,
+	 *         tail]
+	 */
+	protected final Object chunkOf(long position) {
+		Object chunk = chunks[(int) (position >>> CHUNK_SHIFT) & (chunks.length - 1)];
+		return chunk instanceof SpilledChunk ? load(position >>> CHUNK_SHIFT) : chunk;
 	}
 
 
@@ -89,27 +192,53 @@ public abstract class MagicArrayQueue {
 	 *             if the specified element is null
 	 */
 	public abstract boolean offer(int i);
-	
+
 	public abstract int poll();
-	
-	abstract int getArraySize();
-	
-	abstract int getElement(int index);
-	
+
+	abstract int getElement(long position);
+
+	abstract Object allocateChunk();
+
+	/**
+	 * @return the pool of current thread for this implementation
+	 */
+	abstract ChunkPool getPool();
+
+	/**
+	 * @return size of an element in bytes
+	 */
+	abstract int getElementBytes();
+
+	/**
+	 * put the elements of the chunk into the buffer, from 0
+	 */
+	abstract void write(Object chunk, ByteBuffer buffer);
+
+	/**
+	 * get the elements of the chunk from the buffer, from 0
+	 */
+	abstract void read(ByteBuffer buffer, Object chunk);
+
 	public int pollElement(){
 		if (head == tail)
 			throw new RuntimeException("queue is empty!");
-		int result = getElement(head);
-		head = (head + 1) & (getArraySize() - 1);
+		int result = getElement(head++);
+		if (spill != null && ((int) head & CHUNK_MASK) == 0) {
+			// the chunks are read back one by one, don't keep the ones left
+			int slot = (int) ((head >>> CHUNK_SHIFT) - 1) & (chunks.length - 1);
+			recycle(chunks[slot]);
+			chunks[slot] = null;
+		}
 		return result;
 	}
-	
+
 	/**
-	 * must ensure that no doubleCapacity happened
+	 * the chunks after the new tail are kept, so it works however the queue
+	 * has grown since tailStart was got
 	 * @param tailStart
 	 * @param steps
 	 */
-	public void moveTail(int tailStart, int steps){
+	public void moveTail(long tailStart, int steps){
 		tail = tailStart;
 		for(int n=steps;n>0;n--){
 			int b = getElement(tail);
@@ -117,24 +246,61 @@ public abstract class MagicArrayQueue {
 			if(b >= threshold){
 				tail+=b - threshold+1;
 			}
-			tail &= (getArraySize() - 1);
 		}
+		tailChunk = chunkOf(tail);
 	}
-	
-	public int getTail(){
+
+	public long getTail(){
 		return tail;
 	}
-	
-	public int size() {
-		return (tail - head) & (getArraySize() - 1);
+
+	/**
+	 * @return count of the elements, it may exceed Integer.MAX_VALUE once the
+	 *         chunks are spilled
+	 */
+	public long size() {
+		return tail - head;
 	}
 
 	public boolean isEmpty() {
 		return head == tail;
 	}
-	
+
+	/**
+	 * give the chunks to the pool of current thread, the queue can't be used
+	 * any more
+	 */
+	public void release() {
+		ChunkPool pool = getPool();
+		for (int n = 0; n < chunks.length && pool.size < MAX_POOLED_CHUNKS; n++) {
+			if (chunks[n] != null && !(chunks[n] instanceof SpilledChunk))
+				pool.chunks[pool.size++] = chunks[n];
+		}
+		chunks = null;
+		tailChunk = null;
+		if (spill != null) {
+			spill.close();
+			spill = null;
+		}
+	}
+
 	/**
+	 * keep at most maxMemoryBytes of the elements in memory, the others are
+	 * written to a temp file in the directory, which is created when it's
+	 * needed and deleted by {@link #release()}
 	 * 
+	 * @param directory
+	 * @param maxMemoryBytes
+	 *            a few chunks near the head and the tail are always kept
+	 */
+	public void spill(File directory, long maxMemoryBytes) {
+		long maxMemoryChunks = maxMemoryBytes / ((long) CHUNK_SIZE * getElementBytes());
+		spill = new Spill(directory, (int) Math.min(Integer.MAX_VALUE, Math.max(HOT_CHUNKS + 2, maxMemoryChunks)),
+				CHUNK_SIZE * getElementBytes());
+	}
+
+	/**
+	 *
 	 * @param numElements lower bound on initial capacity of the deque
 	 * @param maxValue a reference value for choosing the optimum implementation
 	 * @return
@@ -148,4 +314,102 @@ public abstract class MagicArrayQueue {
 			return new IntegerImpl(numElements);
 		}
 	}
+
+	static final class ChunkPool {
+		final Object[] chunks = new Object[MAX_POOLED_CHUNKS];
+		int size;
+	}
+
+	/**
+	 * the slot of a chunk which is in the spill file
+	 */
+	private static final class SpilledChunk {
+		final long offset;
+
+		SpilledChunk(long offset) {
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * the spill file, the chunks are appended to it, it's rewritten from the
+	 * beginning once all of them are read back<br>
+	 * it's written and read by position through the channel instead of being
+	 * mapped, a mapping can't be released before it's garbage collected, so
+	 * the mappings of the chunks which are read back would pile up, and
+	 * reading a chunk once doesn't gain from mapping it anyway
+	 */
+	private static final class Spill {
+		final File directory;
+		final int maxMemoryChunks;
+		final int chunkBytes;
+		private FileChannel channel;
+		private ByteBuffer buffer;
+		private long end;
+		/**
+		 * count of the chunks in the file which haven't been read back
+		 */
+		private int count;
+
+		Spill(File directory, int maxMemoryChunks, int chunkBytes) {
+			this.directory = directory;
+			this.maxMemoryChunks = maxMemoryChunks;
+			this.chunkBytes = chunkBytes;
+		}
+
+		ByteBuffer buffer() {
+			if (buffer == null)
+				buffer = ByteBuffer.allocateDirect(chunkBytes).order(ByteOrder.nativeOrder());
+			buffer.clear();
+			return buffer;
+		}
+
+		SpilledChunk write(ByteBuffer buffer) {
+			try {
+				if (channel == null)
+					channel = FileChannel.open(Files.createTempFile(directory.toPath(), "frontier", ".tmp"),
+							StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+				SpilledChunk chunk = new SpilledChunk(end);
+				while (buffer.hasRemaining())
+					end += channel.write(buffer, end);
+				count++;
+				return chunk;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		void read(SpilledChunk chunk, ByteBuffer buffer) {
+			try {
+				for (long position = chunk.offset; buffer.hasRemaining();) {
+					int n = channel.read(buffer, position);
+					if (n < 0)
+						throw new IOException("The spill file is truncated");
+					position += n;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			buffer.flip();
+			dropped();
+		}
+
+		/**
+		 * a chunk in the file isn't needed any more
+		 */
+		void dropped() {
+			if (--count == 0)
+				end = 0;
+		}
+
+		void close() {
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					// the file is deleted on close, nothing else to do
+				}
+			}
+		}
+	}
 }
@@ -1,17 +1,43 @@
 package com.github.trytocatch.mapsearcher.magicqueue;
 
+import java.nio.ByteBuffer;
+
 class ShortImpl extends MagicArrayQueue{
 	static final int ONE_ELEMENTS = 0xFFFF-1;
-	private short[] elements;
+	private static final ThreadLocal<ChunkPool> POOL = new ThreadLocal<ChunkPool>() {
+		@Override
+		protected ChunkPool initialValue() {
+			return new ChunkPool();
+		}
+	};
 	
 	ShortImpl(int numElements) {
-		super(ONE_ELEMENTS);
-		elements = new short[allocateElements(numElements)];
+		super(ONE_ELEMENTS, numElements);
+	}
+	
+	@Override
+	Object allocateChunk() {
+		return new short[CHUNK_SIZE];
+	}
+	
+	@Override
+	ChunkPool getPool() {
+		return POOL.get();
+	}
+	
+	@Override
+	int getElementBytes() {
+		return 2;
+	}
+	
+	@Override
+	void write(Object chunk, ByteBuffer buffer) {
+		buffer.asShortBuffer().put((short[]) chunk);
 	}
 	
 	@Override
-	int getArraySize() {
-		return elements.length;
+	void read(ByteBuffer buffer, Object chunk) {
+		buffer.asShortBuffer().get((short[]) chunk);
 	}
 	
 	public boolean offer(int i) {
@@ -38,21 +64,21 @@ class ShortImpl extends MagicArrayQueue{
 			return EMPTY_VALUE;
 		int result = pollElement();
 		if(result >= threshold){
+			boolean twoElements = result == threshold+1;
 			result = pollElement();
-			if(result == threshold+1)
+			if(twoElements)
 				result = (result<<16) + pollElement();
 		}
 		return result;
 	}
 	
 	private void offerShort(int b){
-		elements[tail] = (short)b;
-		if ((tail = (tail + 1) & (elements.length - 1)) == head)
-			elements = doubleCapacity(elements);
+		((short[]) tailChunk)[(int) tail & CHUNK_MASK] = (short)b;
+		advanceTail();
 	}
 
 	@Override
-	int getElement(int index) {
-		return elements[index] & 0xFFFF;
+	int getElement(long position) {
+		return ((short[]) chunkOf(position))[(int) position & CHUNK_MASK] & 0xFFFF;
 	}
 }
\ No newline at end of file
@@ -1,12 +1,25 @@
 package com.github.trytocatch.mapsearcher;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 
@@ -18,6 +31,14 @@ import java.util.List;
 public class Tester {
 
 	public static GraphSearcher<Character> build(String str) {
+		return build(str, NodeOrder.FIRST_SEEN);
+	}
+
+	public static GraphSearcher<Character> build(String str, NodeOrder order) {
+		return build(str, false, order);
+	}
+
+	public static GraphSearcher<Character> build(String str, boolean reverseIndex, NodeOrder order) {
 		String[] datas = str.split(",\\s*");
 		Character[] from = new Character[datas.length];
 		Character[] to = new Character[datas.length];
@@ -29,16 +50,21 @@ public class Tester {
 			weight[n] = Integer.parseInt(s.substring(2));
 			n++;
 		}
-		return new GraphSearcher<Character>(from, to, weight);
+		return new GraphSearcher<Character>(from, to, weight, reverseIndex, order);
 	}
 
 	public static String readFromFile(String inputPath) throws IOException {
-		InputStream is = null;
+		if(inputPath == null || inputPath.isEmpty())
+			return readFromResource("/input2.txt");
+		return read(new FileInputStream(inputPath));
+	}
+
+	public static String readFromResource(String name) throws IOException {
+		return read(Tester.class.getResourceAsStream(name));
+	}
+
+	private static String read(InputStream is) throws IOException {
 		try {
-			if(inputPath == null || inputPath.isEmpty())
-				is = Tester.class.getResourceAsStream("/input2.txt");
-			else
-				is = new FileInputStream(inputPath);
 			if(is == null)
 				throw new FileNotFoundException("Can't find the input file.");
 			BufferedReader br = new BufferedReader(new InputStreamReader(is));
@@ -54,26 +80,31 @@ public class Tester {
 	}
 
 	public static void main(String[] args) {
-		final GraphSearcher<Character> t;
+		final String graph;
 		try {
 			if (args.length == 1)
-				t = build(readFromFile(args[0]));
+				graph = readFromFile(args[0]);
 			else
-				t = build(readFromFile(null));
+				graph = readFromFile(null);
 		} catch (IOException e) {
 			e.printStackTrace();
 			return;
 		}
+		final GraphSearcher<Character> t = build(graph);
 		int n = 0;
-		MyTask[] tasks = new MyTask[] { new FixRoute('A', "ACDE"), new FixRoute('A', "ADCB"), new FixRoute('A', "ABDC"),
-				new FixRoute('A', "AEBCDACDE"), new FixRoute('A', "AECED"),new RouteCounterWithMaxDepth('C', 'C', 5),
+		List<MyTask<Character, ?>> tasks = Arrays.<MyTask<Character, ?>> asList(new FixRoute('A', "ACDE"),
+				new FixRoute('A', "ADCB"), new FixRoute('A', "ABDC"), new FixRoute('A', "AEBCDACDE"),
+				new FixRoute('A', "AECED"), new RouteCounterWithMaxDepth('C', 'C', 5),
 				new RouteCounterWithFixDepth('A', 'C', 5), new ShortestRoute('A', 'C'), new ShortestRoute('B', 'B'),
-				new RouteCounterWithMaxDistance('D', 'C', 25)};
+				new RouteCounterWithMaxDistance('D', 'C', 25), new ParallelShortestRoute('A', 'C'));
 		long old = System.nanoTime();
-		for (MyTask task : tasks) {
+		StringBuilder outputs = new StringBuilder();
+		for (MyTask<Character, ?> task : tasks) {
 			n++;
 			System.out.print("Output #"+n+": ");
-			System.out.println(task.getSigleOutput(t.search(task)));
+			String output = output(t, task);
+			System.out.println(output);
+			outputs.append(output).append(' ');
 		}
 //		final RouteCounterWithMaxDistance rcwmd = new RouteCounterWithMaxDistance('C', 'C', 35);
 //		final Phaser p = new Phaser(5);
@@ -99,6 +130,394 @@ public class Tester {
 //		p.arriveAndAwaitAdvance();
 //		System.out.println(rcwmd.getSigleOutput(t.search(rcwmd)));
 		System.out.println((System.nanoTime() - old));
+		try {
+			System.out.print("Output #"+(++n)+": ");
+			System.out.println(testEdit(build(readFromResource("/input.txt"))));
+			System.out.print("Output #"+(++n)+": ");
+			System.out.println(compare(outputs.toString(), testSaveAndOpen(t, tasks), tasks.size()));
+			System.out.print("Output #"+(++n)+": ");
+			System.out.println(compare(outputs.toString(), testEdgeList(graph, tasks), tasks.size()));
+			System.out.print("Output #"+(++n)+": ");
+			System.out.println(compare(outputs.toString(), testSpill(graph, tasks), tasks.size()));
+			System.out.print("Output #"+(++n)+": ");
+			System.out.println(testCount(t));
+			System.out.print("Output #"+(++n)+": ");
+			System.out.println(testLevelParallel(graph));
+			// the node order must not change the results
+			for (NodeOrder order : new NodeOrder[] { NodeOrder.DEGREE, NodeOrder.CUTHILL_MCKEE }) {
+				System.out.print("Output #"+(++n)+": "+order+" ");
+				System.out.println(compare(outputs.toString(), outputs(build(graph, order), tasks), tasks.size()));
+			}
+			System.out.print("Output #"+(++n)+": ");
+			System.out.println(testAsync(t));
+			for (boolean fork : new boolean[] { false, true }) {
+				System.out.print("Output #"+(++n)+": depth first" + (fork ? " forking " : " "));
+				System.out.println(compare(outputs.toString(), outputs(t, depthFirst(tasks, fork)), tasks.size()));
+			}
+			System.out.print("Output #"+(++n)+": ");
+			System.out.println(testIndexed(t));
+			System.out.print("Output #"+(++n)+": ");
+			System.out.println(testShortestPath(graph));
+			System.out.print("Output #"+(++n)+": ");
+			System.out.println(testBatch(t));
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return the output of the task searched on t
+	 */
+	static <R> String output(GraphSearcher<Character> t, MyTask<Character, R> task) {
+		return task.getSigleOutput(t.search(task));
+	}
+
+	/**
+	 * @return the outputs of the tasks searched on t
+	 */
+	static String outputs(GraphSearcher<Character> t, List<? extends MyTask<Character, ?>> tasks) {
+		StringBuilder sb = new StringBuilder();
+		for (MyTask<Character, ?> task : tasks)
+			sb.append(output(t, task)).append(' ');
+		return sb.toString();
+	}
+
+	/**
+	 * @return whether the outputs are the same as the ones of #1~#count
+	 */
+	static String compare(String expected, String outputs, int count) {
+		return expected.equals(outputs) ? "same as #1~#" + count : "CHANGED: " + outputs;
+	}
+
+	/**
+	 * save the graph to a file and search on the graph opened from it
+	 */
+	static String testSaveAndOpen(GraphSearcher<Character> t, List<MyTask<Character, ?>> tasks) throws IOException {
+		File file = File.createTempFile("tester", ".graph");
+		file.deleteOnExit();
+		t.save(file, NodeSerializer.CHARACTER);
+		return outputs(GraphSearcher.open(file, NodeSerializer.CHARACTER), tasks);
+	}
+
+	static final NodeParser<Character> CHARACTER_PARSER = new NodeParser<Character>() {
+		@Override
+		public Character parse(String text) {
+			return text.length() == 1 ? text.charAt(0) : null;
+		}
+	};
+
+	/**
+	 * write the graph as an edge list with comments, blank lines and spaces,
+	 * and load it in chunks of a few bytes, so most lines cross the chunk
+	 * boundaries, a malformed line must be reported with its line number,
+	 * also when the parser throws
+	 */
+	static String testEdgeList(String graph, List<MyTask<Character, ?>> tasks) throws IOException {
+		File file = File.createTempFile("tester", ".txt");
+		file.deleteOnExit();
+		String[] edges = graph.split(",\\s*");
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			out.write("# from,to,weight\n");
+			for (String s : edges)
+				out.write(s.charAt(0) + ", " + s.charAt(1) + " ," + s.substring(2) + "\n\n");
+		} finally {
+			out.close();
+		}
+		EdgeListLoader<Character> loader = new EdgeListLoader<Character>(CHARACTER_PARSER);
+		loader.setChunkSize(7);
+		String outputs = outputs(loader.load(file), tasks);
+		out = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+		try {
+			out.write("AB,C,5\n");
+		} finally {
+			out.close();
+		}
+		String line = "line " + (2 + 2 * edges.length) + ": AB,C,5";
+		try {
+			loader.load(file);
+			return "NOT REPORTED: AB,C,5";
+		} catch (IOException e) {
+			if (!e.getMessage().endsWith(line))
+				return "WRONG LINE: " + e.getMessage();
+		}
+		loader = new EdgeListLoader<Character>(new NodeParser<Character>() {
+			@Override
+			public Character parse(String text) {
+				if (text.length() != 1)
+					throw new IllegalArgumentException(text);
+				return text.charAt(0);
+			}
+		});
+		loader.setChunkSize(7);
+		try {
+			loader.load(file);
+			return "NOT REPORTED: AB,C,5";
+		} catch (IOException e) {
+			if (!e.getMessage().endsWith(line) || !(e.getCause() instanceof IllegalArgumentException))
+				return "NOT WRAPPED: " + e;
+		}
+		return outputs;
+	}
+
+	/**
+	 * search with the breadth first queues spilled to temp files, only a few
+	 * chunks of each queue are kept in memory, the files must be deleted
+	 * after the searches
+	 */
+	static String testSpill(String graph, List<MyTask<Character, ?>> tasks) throws IOException {
+		File directory = Files.createTempDirectory("tester").toFile();
+		directory.deleteOnExit();
+		GraphSearcher<Character> t = build(graph);
+		t.setFrontierSpill(directory, 1);
+		String outputs = outputs(t, tasks);
+		String[] files = directory.list();
+		return files.length == 0 ? outputs : "FILES LEFT: " + files.length;
+	}
+
+	/**
+	 * count the paths of #6, #7 and #10 without enumerating them, each count
+	 * is followed by the one of the task, they must be the same
+	 * 
+	 * @return like 6/6 3/3 5/5
+	 */
+	static String testCount(GraphSearcher<Character> t) {
+		RouteCounterWithMaxDepth withMaxDepth = new RouteCounterWithMaxDepth('C', 'C', 5);
+		RouteCounterWithFixDepth withFixDepth = new RouteCounterWithFixDepth('A', 'C', 5);
+		RouteCounterWithMaxDistance withMaxDistance = new RouteCounterWithMaxDistance('D', 'C', 25);
+		return t.countPathsWithinDepth('C', 'C', 5) + "/" + withMaxDepth.getSigleOutput(t.search(withMaxDepth)) + " "
+				+ t.countPaths('A', 'C', 5) + "/" + withFixDepth.getSigleOutput(t.search(withFixDepth)) + " "
+				// the task counts the paths lighter than 25
+				+ t.countPathsWithinWeight('D', 'C', 24) + "/"
+				+ withMaxDistance.getSigleOutput(t.search(withMaxDistance));
+	}
+
+	/**
+	 * search the tasks of #6, #7 and #10 level by level, each level is split
+	 * among the threads of a pool
+	 * 
+	 * @return the outputs, they must be the same as #6, #7 and #10
+	 */
+	static String testLevelParallel(String graph) {
+		List<MyTask<Character, int[]>> counters = Arrays.<MyTask<Character, int[]>> asList(
+				new RouteCounterWithMaxDepth('C', 'C', 5), new RouteCounterWithFixDepth('A', 'C', 5),
+				new RouteCounterWithMaxDistance('D', 'C', 25));
+		GraphSearcher<Character> t = build(graph);
+		String expected = outputs(t, counters);
+		ForkJoinPool pool = GraphSearcher.createPool(4, "tester");
+		try {
+			t.setPool(pool);
+			for (MyTask<Character, int[]> counter : counters) {
+				counter.setLevelParallel(true);
+				counter.setMaxParallelTask(4000);
+			}
+			String outputs = outputs(t, counters);
+			return expected.equals(outputs) ? outputs + "same as #6 #7 #10" : "CHANGED: " + outputs;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return the tasks searched depth first, if fork is true, they fork near
+	 *         the start, so the searcher splits off their unexplored edges
+	 */
+	static List<MyTask<Character, ?>> depthFirst(List<MyTask<Character, ?>> tasks, boolean fork) {
+		List<MyTask<Character, ?>> result = new ArrayList<MyTask<Character, ?>>();
+		for (MyTask<Character, ?> task : tasks)
+			result.add(depthFirst(task, fork));
+		return result;
+	}
+
+	static <R> MyTask<Character, R> depthFirst(MyTask<Character, R> task, boolean fork) {
+		return new DepthFirst<R>(task, fork);
+	}
+
+	/**
+	 * count the paths of #6 with an IndexedTask, breadth first and depth
+	 * first
+	 * 
+	 * @return like 6 6 same as #6
+	 */
+	static String testIndexed(GraphSearcher<Character> t) {
+		String expected = output(t, new RouteCounterWithMaxDepth('C', 'C', 5));
+		StringBuilder sb = new StringBuilder();
+		for (boolean depthFirst : new boolean[] { false, true }) {
+			IndexedRouteCounter counter = new IndexedRouteCounter('C', t.getNodeIndex('C'), 5);
+			counter.setDepthFirst(depthFirst);
+			String output = counter.getSigleOutput(t.search(counter));
+			if (!output.equals(expected))
+				return "CHANGED: " + output;
+			sb.append(output).append(' ');
+		}
+		return sb.append("same as #6").toString();
+	}
+
+	/**
+	 * find the shortest paths between all the pairs of nodes by Dijkstra, A*
+	 * and the bidirectional search, they must have the same weights, and the
+	 * routes must be valid, which may differ on a tie<br>
+	 * also a graph where A can't reach D, and one with zero weights
+	 * 
+	 * @return like 25 pairs agree, 9 [A, B, C] from A to C, no path, 0 [A, B,
+	 *         C, D] with zero weights
+	 */
+	static String testShortestPath(String graph) {
+		GraphSearcher<Character> t = build(graph, true, NodeOrder.FIRST_SEEN);
+		int count = t.getNodeCount();
+		for (int s = 0; s < count; s++) {
+			for (int e = 0; e < count; e++) {
+				String paths = shortestPaths(t, graph, t.getNode(s), t.getNode(e));
+				if (paths.startsWith("DIFFERENT"))
+					return paths;
+			}
+		}
+		String output = count * count + " pairs agree, " + shortestPaths(t, graph, 'A', 'C') + " from A to C";
+		String noPath = "AB1, BC2, CA3, DA1";
+		output += ", " + shortestPaths(build(noPath, true, NodeOrder.FIRST_SEEN), noPath, 'A', 'D');
+		String zeroWeights = "AB0, BC0, AC1, CD0, BD2";
+		output += ", " + shortestPaths(build(zeroWeights, true, NodeOrder.FIRST_SEEN), zeroWeights, 'A', 'D');
+		return output + " with zero weights";
+	}
+
+	/**
+	 * @return the path found by all the three, or DIFFERENT and the paths
+	 */
+	static String shortestPaths(GraphSearcher<Character> t, String graph, Character start, Character end) {
+		ShortestPath<Character> dijkstra = t.shortestPath(start, end);
+		ShortestPath<Character> aStar = t.shortestPath(start, end, lightestEdges(t, graph, end));
+		ShortestPath<Character> bidirectional = t.bidirectionalShortestPath(start, end);
+		if (!isSame(t, start, end, dijkstra, aStar) || !isSame(t, start, end, dijkstra, bidirectional))
+			return "DIFFERENT from " + start + " to " + end + ": " + dijkstra + ", " + aStar + ", " + bidirectional;
+		return dijkstra == null ? "no path" : dijkstra.toString();
+	}
+
+	/**
+	 * @return whether both are null, or they have the same weight and the
+	 *         routes are from start to end with that weight
+	 */
+	static boolean isSame(GraphSearcher<Character> t, Character start, Character end, ShortestPath<Character> path1,
+			ShortestPath<Character> path2) {
+		if (path1 == null || path2 == null)
+			return path1 == path2;
+		for (ShortestPath<Character> path : Arrays.asList(path1, path2)) {
+			List<Character> route = path.getRoute();
+			if (!route.get(0).equals(start) || !route.get(route.size() - 1).equals(end)
+					|| t.getWeight(route) != path.getWeight())
+				return false;
+		}
+		return path1.getWeight() == path2.getWeight();
+	}
+
+	/**
+	 * the remaining weight is the lightest edge from the node at least,
+	 * unless it's the end
+	 */
+	static Heuristic lightestEdges(final GraphSearcher<Character> t, String graph, final Character end) {
+		final Map<Character, Integer> lightest = new HashMap<Character, Integer>();
+		for (String s : graph.split(",\\s*")) {
+			Integer weight = lightest.get(s.charAt(0));
+			lightest.put(s.charAt(0), Math.min(weight == null ? Integer.MAX_VALUE : weight,
+					Integer.parseInt(s.substring(2))));
+		}
+		return new Heuristic() {
+			@Override
+			public int estimate(int node) {
+				Character c = t.getNode(node);
+				Integer weight = lightest.get(c);
+				return c.equals(end) || weight == null ? 0 : weight;
+			}
+		};
+	}
+
+	/**
+	 * search the tasks of #1~#10 and FixRoute A-B-C together, the ones from
+	 * A share one batch, in which FixRoute returns BREAK on finding the route,
+	 * each result must be the same as searching the task alone
+	 */
+	static String testBatch(GraphSearcher<Character> t) {
+		List<MyTask<Character, int[]>> tasks = Arrays.<MyTask<Character, int[]>> asList(new FixRoute('A', "ACDE"),
+				new FixRoute('A', "ADCB"), new FixRoute('A', "ABDC"), new FixRoute('A', "AEBCDACDE"),
+				new FixRoute('A', "AECED"), new RouteCounterWithMaxDepth('C', 'C', 5),
+				new RouteCounterWithFixDepth('A', 'C', 5), new ShortestRoute('A', 'C'), new ShortestRoute('B', 'B'),
+				new RouteCounterWithMaxDistance('D', 'C', 25), new FixRoute('A', "ABC"));
+		String expected = outputs(t, tasks);
+		List<int[]> results = t.searchAll(tasks);
+		StringBuilder sb = new StringBuilder();
+		for (int n = 0; n < tasks.size(); n++)
+			sb.append(tasks.get(n).getSigleOutput(results.get(n))).append(' ');
+		return expected.equals(sb.toString()) ? sb + "same as searched alone" : "CHANGED: " + sb;
+	}
+
+	/**
+	 * search asynchronously: the result must be the same as #6, a cancelled
+	 * search must stop, and a search stopped by the deadline must keep the
+	 * results of all its tasks, depth first and breadth first
+	 * 
+	 * @return like 6 cancelled kept kept
+	 */
+	static String testAsync(GraphSearcher<Character> t) throws InterruptedException {
+		ForkJoinPool pool = GraphSearcher.createPool(4, "tester");
+		try {
+			StringBuilder sb = new StringBuilder();
+			RouteCounterWithMaxDepth counter = new RouteCounterWithMaxDepth('C', 'C', 5);
+			sb.append(counter.getSigleOutput(t.searchAsync(counter, pool).join()));
+			SlowRouteCounter slow = new SlowRouteCounter('C', 'C', 20, false);
+			CompletableFuture<int[]> future = t.searchAsync(slow, pool);
+			Thread.sleep(50);
+			future.cancel(false);
+			// the checks which have started finish in a millisecond
+			Thread.sleep(50);
+			int hits = slow.hits.get();
+			Thread.sleep(50);
+			if (!future.isCancelled())
+				sb.append(" NOT CANCELLED");
+			else
+				sb.append(hits == slow.hits.get() ? " cancelled" : " NOT STOPPED");
+			for (boolean depthFirst : new boolean[] { true, false }) {
+				slow = new SlowRouteCounter('C', 'C', 20, depthFirst);
+				int result = t.searchAsync(slow, pool, 200, TimeUnit.MILLISECONDS).join()[0];
+				hits = slow.hits.get();
+				sb.append(hits > 0 && result == hits ? " kept" : " DROPPED " + (hits - result) + " of " + hits);
+			}
+			return sb.toString();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * edit the graph of input.txt, the shortest route from A to C is 9, the
+	 * search which has started keeps running on its version
+	 * 
+	 * @return 5 2 5 5 2
+	 */
+	static String testEdit(final GraphSearcher<Character> t) {
+		StringBuilder sb = new StringBuilder();
+		t.updateWeight('A', 'B', 1);// ABC: 1+4
+		sb.append(new ShortestRoute('A', 'C').getSigleOutput(t.search(new ShortestRoute('A', 'C'))));
+		t.edit().addEdge('A', 'F', 1).addEdge('F', 'C', 1).commit();// AFC: 1+1
+		sb.append(' ').append(new ShortestRoute('A', 'C').getSigleOutput(t.search(new ShortestRoute('A', 'C'))));
+		t.removeEdge('F', 'C');
+		sb.append(' ').append(new ShortestRoute('A', 'C').getSigleOutput(t.search(new ShortestRoute('A', 'C'))));
+		ShortestRoute editing = new ShortestRoute('A', 'C') {
+			boolean edited;
+
+			@Override
+			protected ReturnState check(List<Character> steps, int depth, int weight, int[] result,
+					Boolean isRepeated) {
+				if (!edited) {
+					edited = true;
+					t.updateWeight('B', 'C', 1);// ABC: 1+1, the new version only
+				}
+				return super.check(steps, depth, weight, result, isRepeated);
+			}
+		};
+		sb.append(' ').append(editing.getSigleOutput(t.search(editing)));
+		sb.append(' ').append(new ShortestRoute('A', 'C').getSigleOutput(t.search(new ShortestRoute('A', 'C'))));
+		return sb.toString();
 	}
 	
 	static interface ResultConvertor<R>{
@@ -195,6 +614,36 @@ public class Tester {
 		}
 	}
 
+	/**
+	 * same as RouteCounterWithMaxDepth, but every check takes a millisecond,
+	 * forks near the start and the paths found are also counted in hits, so
+	 * a search can be stopped while it's running and the merged result can be
+	 * compared with hits
+	 */
+	static class SlowRouteCounter extends RouteCounterWithMaxDepth {
+		final AtomicInteger hits = new AtomicInteger();
+
+		public SlowRouteCounter(Character start, char end, int maxDepth, boolean depthFirst) {
+			super(start, end, maxDepth);
+			setDepthFirst(depthFirst);
+		}
+
+		@Override
+		protected ReturnState check(List<Character> steps, int depth, int weight, int[] result,
+				Boolean isRepeated) {
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			int old = result[0];
+			ReturnState rs = super.check(steps, depth, weight, result, isRepeated);
+			if (result[0] != old)
+				hits.incrementAndGet();
+			return rs == ReturnState.CONTINUE && depth < 2 ? ReturnState.FORK_CONTINUE : rs;
+		}
+	}
+
 	
 	static class RouteCounterWithFixDepth extends MyTask<Character, int[]> {
 		char end;
@@ -278,6 +727,49 @@ public class Tester {
 	}
 	
 	
+	/**
+	 * same as ShortestRoute, but the branches are searched in parallel and
+	 * prune each other through a SharedBound
+	 */
+	static class ParallelShortestRoute extends MyTask<Character, SharedBound> {
+		char end;
+
+		public ParallelShortestRoute(Character start, char end) {
+			super(start);
+			this.end = end;
+			setDepthFirst(false);
+			setStopFurtherSearchOnRepeat(true);
+		}
+
+		@Override
+		protected ReturnState check(List<Character> steps, int depth, int weight, SharedBound result,
+				Boolean isRepeated) {
+			if (weight >= result.get())
+				return ReturnState.STOP;
+			if (depth > 0 && steps.get(depth).equals(end)) {
+				result.tighten(weight);
+				return ReturnState.STOP;
+			}
+			return depth < 2 ? ReturnState.FORK_CONTINUE : ReturnState.CONTINUE;
+		}
+
+		@Override
+		public String getSigleOutput(SharedBound result) {
+			return result.isBounded() ? result.toString() : "NO SUCH ROUTE";
+		}
+
+		@Override
+		public SharedBound createResultHolder() {
+			return new SharedBound();
+		}
+
+		@Override
+		public ForkResultHandler<SharedBound> getForkResultHandler() {
+			return SharedBound.getForkResultHandler();
+		}
+	}
+	
+	
 	static class RouteCounterWithMaxDistance extends MyTask<Character, int[]> {
 		char end;
 		int maxDistance;
@@ -323,6 +815,83 @@ public class Tester {
 			return IntArrayResultHandler.instance;
 		}
 	}
+	/**
+	 * same as RouteCounterWithMaxDepth, but the steps are node indexes
+	 */
+	static class IndexedRouteCounter extends IndexedTask<Character, int[]> implements ResultConvertor<int[]> {
+		int end;
+		int maxDepth;
+
+		public IndexedRouteCounter(Character start, int end, int maxDepth) {
+			super(start);
+			this.end = end;
+			this.maxDepth = maxDepth;
+		}
+
+		@Override
+		protected ReturnState check(int[] steps, int depth, int node, int weight, int[] result,
+				Boolean isRepeated) {
+			if (depth > 0 && depth <= maxDepth && node == end)
+				result[0]++;
+			if (depth >= maxDepth)
+				return ReturnState.STOP;
+			else
+				return ReturnState.CONTINUE;
+		}
+
+		@Override
+		public String getSigleOutput(int[] result) {
+			return String.valueOf(result[0]);
+		}
+
+		@Override
+		public int[] createResultHolder() {
+			return new int[]{0};
+		}
+
+		@Override
+		public ForkResultHandler<int[]> getForkResultHandler() {
+			return IntArrayResultHandler.instance;
+		}
+	}
+
+	/**
+	 * searches the task depth first, the other settings are the same
+	 */
+	static class DepthFirst<R> extends MyTask<Character, R> {
+		final MyTask<Character, R> task;
+		final boolean fork;
+
+		public DepthFirst(MyTask<Character, R> task, boolean fork) {
+			super(task.getStart());
+			this.task = task;
+			this.fork = fork;
+			setDepthFirst(true);
+			setStopFurtherSearchOnRepeat(task.isStopFurtherSearchOnRepeat());
+			setMaxParallelTask(fork ? task.getMaxParallelTask() : 1);
+		}
+
+		@Override
+		protected ReturnState check(List<Character> steps, int depth, int weight, R result, Boolean isRepeated) {
+			ReturnState rs = task.check(steps, depth, weight, result, isRepeated);
+			return fork && rs == ReturnState.CONTINUE && depth < 2 ? ReturnState.FORK_CONTINUE : rs;
+		}
+
+		@Override
+		public String getSigleOutput(R result) {
+			return task.getSigleOutput(result);
+		}
+
+		@Override
+		public R createResultHolder() {
+			return task.createResultHolder();
+		}
+
+		@Override
+		public ForkResultHandler<R> getForkResultHandler() {
+			return task.getForkResultHandler();
+		}
+	}
 	static class IntArrayResultHandler implements ForkResultHandler<int[]>{
 		static IntArrayResultHandler instance = new IntArrayResultHandler(); 
 		@Override
@@ -351,8 +920,8 @@ public class Tester {
 				return result2;
 			else if(result2[0] == -1)
 				return result1;
-			else
-				return new int[]{result1[0]+result2[0]};
+			else// the shorter route, there is only one for FixRoute
+				return result1[0] <= result2[0] ? result1 : result2;
 		}
 		@Override
 		public boolean hasResult(int[] result) {